@@ -47,15 +47,23 @@ dependencies {
     // Room Database
     implementation("androidx.room:room-runtime:2.6.1")
     annotationProcessor("androidx.room:room-compiler:2.6.1")
+    implementation("androidx.room:room-paging:2.6.1")
+    
+    // Paging
+    implementation("androidx.paging:paging-runtime:3.2.1")
     
     // Lifecycle components
     implementation("androidx.lifecycle:lifecycle-viewmodel:2.7.0")
     implementation("androidx.lifecycle:lifecycle-livedata:2.7.0")
+    implementation("androidx.lifecycle:lifecycle-viewmodel-ktx:2.7.0")
     
     // Glide for image loading
     implementation("com.github.bumptech.glide:glide:4.16.0")
     annotationProcessor("com.github.bumptech.glide:compiler:4.16.0")
     
+    // ExifInterface for image orientation
+    implementation("androidx.exifinterface:exifinterface:1.3.7")
+    
     // Lottie for animations
     implementation("com.airbnb.android:lottie:6.2.0")
     
@@ -70,10 +78,14 @@ dependencies {
     
     // WebDAV Client
     implementation("com.github.thegrizzlylabs:sardine-android:0.8")
+    implementation("com.squareup.okhttp3:okhttp:4.12.0")
     
     // Gson for JSON processing
     implementation("com.google.code.gson:gson:2.10.1")
     
+    // Pinyin for search index
+    implementation("com.github.promeg:tinypinyin:2.0.3")
+    
     testImplementation(libs.junit)
     androidTestImplementation(libs.ext.junit)
     androidTestImplementation(libs.espresso.core)
@@ -0,0 +1,101 @@
+package cn.younglee.goodsticks.data.dao;
+
+import android.content.Context;
+import android.database.Cursor;
+
+import androidx.room.Room;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import cn.younglee.goodsticks.data.database.AppDatabase;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 检查列表和搜索查询的执行计划，防止索引失效后退化为全表扫描或临时排序
+ * SQL直接取自NoteDao的查询常量，只把参数替换为常量值；分页查询按room-paging的方式包上LIMIT/OFFSET
+ */
+@RunWith(AndroidJUnit4.class)
+public class NoteQueryPlanTest {
+
+    // 不同SQLite版本的输出分别为"SCAN TABLE notes"和"SCAN notes"，不能匹配到notes_fts
+    private static final Pattern FULL_SCAN_NOTES = Pattern.compile("\\bSCAN (TABLE )?notes\\b");
+    private static final Pattern SEARCH_NOTES_BY_ROWID =
+            Pattern.compile("\\bSEARCH (TABLE )?notes USING INTEGER PRIMARY KEY\\b");
+    private static final Pattern FTS_INDEX = Pattern.compile("\\bnotes_fts VIRTUAL TABLE INDEX\\b");
+    private static final String LIST_INDEX = "index_notes_user_id_is_pinned_modified_date";
+
+    private AppDatabase db;
+
+    @Before
+    public void setUp() {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        db = Room.inMemoryDatabaseBuilder(context, AppDatabase.class).build();
+    }
+
+    @After
+    public void tearDown() {
+        db.close();
+    }
+
+    @Test
+    public void pagedListUsesCompositeIndexWithoutSort() {
+        String plan = explain("SELECT * FROM ( " + bind(NoteDao.SUMMARIES_BY_USER_QUERY) + " ) LIMIT 30 OFFSET 0");
+
+        assertTrue(plan, plan.contains(LIST_INDEX));
+        assertFalse(plan, FULL_SCAN_NOTES.matcher(plan).find());
+        assertFalse(plan, plan.contains("TEMP B-TREE"));
+    }
+
+    @Test
+    public void searchIsDrivenByFtsIndex() {
+        String plan = explain(bind(NoteDao.SEARCH_BY_USER_QUERY));
+
+        assertTrue(plan, FTS_INDEX.matcher(plan).find());
+        assertTrue(plan, SEARCH_NOTES_BY_ROWID.matcher(plan).find());
+        assertFalse(plan, FULL_SCAN_NOTES.matcher(plan).find());
+        assertFalse(plan, plan.contains(LIST_INDEX));
+    }
+
+    @Test
+    public void rankedSearchIsDrivenByFtsIndex() {
+        String plan = explain(bind(NoteDao.RANKED_SEARCH_BY_USER_QUERY));
+
+        assertTrue(plan, FTS_INDEX.matcher(plan).find());
+        assertTrue(plan, SEARCH_NOTES_BY_ROWID.matcher(plan).find());
+        assertFalse(plan, FULL_SCAN_NOTES.matcher(plan).find());
+    }
+
+    /**
+     * 把DAO查询中的命名参数替换为常量，EXPLAIN的计划与绑定参数时相同
+     */
+    private static String bind(String sql) {
+        String bound = sql.replace(":userId", "1").replace(":matchQuery", "'abc'");
+        assertFalse(bound, bound.contains(":"));
+        return bound;
+    }
+
+    /**
+     * @return 执行计划各行的detail列，以换行分隔
+     */
+    private String explain(String sql) {
+        List<String> details = new ArrayList<>();
+        try (Cursor cursor = db.getOpenHelper().getReadableDatabase().query("EXPLAIN QUERY PLAN " + sql)) {
+            int detail = cursor.getColumnIndexOrThrow("detail");
+            while (cursor.moveToNext()) {
+                details.add(cursor.getString(detail));
+            }
+        }
+        return String.join("\n", details);
+    }
+}
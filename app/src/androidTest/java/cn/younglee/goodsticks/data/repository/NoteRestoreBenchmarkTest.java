@@ -0,0 +1,144 @@
+package cn.younglee.goodsticks.data.repository;
+
+import android.content.Context;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.room.Room;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import cn.younglee.goodsticks.data.database.AppDatabase;
+import cn.younglee.goodsticks.data.entity.Note;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+/**
+ * 恢复备份的耗时对比：逐条插入（旧版本的做法）与在一个事务中分批插入
+ * 使用文件数据库，每条独立插入都要提交一次事务，与实际恢复时相同。结果输出到logcat：
+ * adb logcat -s NoteRestoreBenchmark
+ */
+@RunWith(AndroidJUnit4.class)
+public class NoteRestoreBenchmarkTest {
+    private static final String TAG = "NoteRestoreBenchmark";
+    private static final String DB_NAME = "restore_benchmark.db";
+
+    private static final long USER_ID = 1;
+    private static final long OTHER_USER_ID = 2;
+    private static final int NOTE_COUNT = 10_000;
+    private static final int WARM_UP_COUNT = 200;
+    private static final int BATCH_SIZE = 200;
+
+    private Context context;
+    private AppDatabase db;
+    private NoteRepository repository;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.deleteDatabase(DB_NAME);
+        db = Room.databaseBuilder(context, AppDatabase.class, DB_NAME).build();
+        repository = new NoteRepository(db, USER_ID);
+    }
+
+    @After
+    public void tearDown() {
+        db.close();
+        context.deleteDatabase(DB_NAME);
+    }
+
+    @Test
+    public void restoreTenThousandNotes() {
+        // 预热，排除类加载和建库的开销
+        restorePerNote(WARM_UP_COUNT);
+        restoreBatched(WARM_UP_COUNT);
+
+        long perNoteMillis = restorePerNote(NOTE_COUNT);
+        assertEquals(NOTE_COUNT, countNotes());
+
+        long batchedMillis = restoreBatched(NOTE_COUNT);
+        assertEquals(NOTE_COUNT, countNotes());
+
+        Log.i(TAG, String.format(Locale.ROOT, "restore %d notes: per-note=%dms batched=%dms (%.1fx)",
+                NOTE_COUNT, perNoteMillis, batchedMillis, (double) perNoteMillis / Math.max(1, batchedMillis)));
+    }
+
+    @Test
+    public void restoreSkipsIdsOwnedByOtherUsers() {
+        Note foreign = createNote(5);
+        foreign.setUserId(OTHER_USER_ID);
+        new NoteRepository(db, OTHER_USER_ID).insertNoteSync(foreign);
+
+        List<Note> backup = new ArrayList<>();
+        backup.add(createNote(5));
+        backup.add(createNote(6));
+        List<Long> skipped = repository.replaceAllNotesByUserIdSync(USER_ID, sourceOf(backup));
+
+        assertNotNull(skipped);
+        assertEquals(Collections.singletonList(5L), skipped);
+        assertEquals(1, countNotes());
+        assertEquals(OTHER_USER_ID, db.noteDao().getNoteByIdSync(5).getUserId());
+    }
+
+    /**
+     * 旧版本的恢复方式：删除后逐条插入，每条笔记一个事务
+     */
+    private long restorePerNote(int count) {
+        List<Note> notes = createNotes(count);
+        long start = SystemClock.elapsedRealtime();
+        repository.deleteAllNotesByUserIdSync(USER_ID);
+        for (Note note : notes) {
+            note.setUserId(USER_ID);
+            repository.insertNoteSync(note);
+        }
+        return SystemClock.elapsedRealtime() - start;
+    }
+
+    private long restoreBatched(int count) {
+        NoteRepository.NoteBatchSource source = sourceOf(createNotes(count));
+        long start = SystemClock.elapsedRealtime();
+        assertNotNull(repository.replaceAllNotesByUserIdSync(USER_ID, source));
+        return SystemClock.elapsedRealtime() - start;
+    }
+
+    private int countNotes() {
+        return db.noteDao().getNotesByUserIdSync(USER_ID).size();
+    }
+
+    private static NoteRepository.NoteBatchSource sourceOf(List<Note> notes) {
+        int[] offset = {0};
+        return () -> {
+            int from = offset[0];
+            int to = Math.min(from + BATCH_SIZE, notes.size());
+            offset[0] = to;
+            return new ArrayList<>(notes.subList(from, to));
+        };
+    }
+
+    private static List<Note> createNotes(int count) {
+        List<Note> notes = new ArrayList<>(count);
+        for (int i = 1; i <= count; i++) {
+            notes.add(createNote(i));
+        }
+        return notes;
+    }
+
+    private static Note createNote(long id) {
+        Note note = new Note();
+        note.setId(id);
+        note.setTitle("笔记 " + id);
+        note.setContent("第" + id + "条测试笔记的正文，包含一些中文和English words用于建立搜索索引。");
+        return note;
+    }
+}
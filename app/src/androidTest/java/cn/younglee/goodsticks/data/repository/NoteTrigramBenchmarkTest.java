@@ -0,0 +1,195 @@
+package cn.younglee.goodsticks.data.repository;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.room.Room;
+import androidx.room.RoomDatabase;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import cn.younglee.goodsticks.data.database.AppDatabase;
+import cn.younglee.goodsticks.data.entity.Note;
+import cn.younglee.goodsticks.data.entity.NoteTrigram;
+import cn.younglee.goodsticks.utils.AppExecutors;
+import cn.younglee.goodsticks.utils.SearchTokenizer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 容错搜索三元组索引的存储和查询耗时
+ * 使用文件数据库和正式的建表流程，记录索引行数、数据库大小、候选查询和编辑一条笔记的耗时。结果输出到logcat：
+ * adb logcat -s NoteTrigramBenchmark
+ */
+@RunWith(AndroidJUnit4.class)
+public class NoteTrigramBenchmarkTest {
+    private static final String TAG = "NoteTrigramBenchmark";
+    private static final String DB_NAME = "trigram_benchmark.db";
+
+    private static final long USER_ID = 1;
+    private static final int NOTE_COUNT = 10_000;
+    private static final int BATCH_SIZE = 200;
+    private static final int WARM_UP_ROUNDS = 5;
+    private static final int ROUNDS = 50;
+    private static final long SEED = 16;
+
+    // 与NoteRepository的容错搜索参数一致
+    private static final double MIN_OVERLAP = 0.3;
+    private static final int CANDIDATE_LIMIT = 50;
+
+    private static final String[] WORDS = {
+            "会议", "记录", "购物", "清单", "周末", "计划", "读书", "笔记", "旅行", "预算",
+            "项目", "进度", "想法", "灵感", "备忘", "提醒", "食谱", "晚餐", "健身", "目标",
+            "meeting", "notes", "project", "budget", "travel", "recipe", "reminder",
+            "schedule", "weekend", "shopping", "android", "database", "backup", "search"
+    };
+
+    private Context context;
+    private AppDatabase db;
+    private NoteRepository repository;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.deleteDatabase(DB_NAME);
+        db = Room.databaseBuilder(context, AppDatabase.class, DB_NAME)
+                .addCallback(new RoomDatabase.Callback() {
+                    @Override
+                    public void onCreate(@NonNull SupportSQLiteDatabase database) {
+                        AppDatabase.createRawSchema(database);
+                    }
+                })
+                .build();
+        repository = new NoteRepository(db, USER_ID);
+    }
+
+    @After
+    public void tearDown() {
+        db.close();
+        context.deleteDatabase(DB_NAME);
+    }
+
+    @Test
+    public void trigramIndexSizeAndQueryTime() {
+        assertTrue(queryString("SELECT sql FROM sqlite_master WHERE name = 'note_trigrams'")
+                .contains("WITHOUT ROWID"));
+
+        List<Note> notes = createNotes(NOTE_COUNT);
+        long restoreStart = SystemClock.elapsedRealtime();
+        assertNotNull(repository.replaceAllNotesByUserIdSync(USER_ID, sourceOf(notes)));
+        long restoreMillis = SystemClock.elapsedRealtime() - restoreStart;
+
+        db.getOpenHelper().getWritableDatabase().query("PRAGMA wal_checkpoint(TRUNCATE)").close();
+        long rows = queryLong("SELECT COUNT(*) FROM note_trigrams");
+        long bytes = context.getDatabasePath(DB_NAME).length();
+
+        // 拼错笔记中出现的单词，FTS查不到，只能走三元组候选
+        List<String> grams = new ArrayList<>(SearchTokenizer.buildQueryTrigrams("shoping budgte"));
+        int minShared = Math.max(1, (int) Math.ceil(grams.size() * MIN_OVERLAP));
+        for (int i = 0; i < WARM_UP_ROUNDS; i++) {
+            db.noteDao().getTrigramCandidatesByUserId(USER_ID, grams, minShared, CANDIDATE_LIMIT);
+        }
+        List<Long> candidates = null;
+        long queryStart = SystemClock.elapsedRealtimeNanos();
+        for (int i = 0; i < ROUNDS; i++) {
+            candidates = db.noteDao().getTrigramCandidatesByUserId(USER_ID, grams, minShared, CANDIDATE_LIMIT);
+        }
+        double queryMillis = (SystemClock.elapsedRealtimeNanos() - queryStart) / 1e6 / ROUNDS;
+        assertFalse(candidates.isEmpty());
+
+        Log.i(TAG, String.format(Locale.ROOT,
+                "%d notes: %d trigram rows, database %d KB, restore %dms, candidate query %.2fms",
+                NOTE_COUNT, rows, bytes / 1024, restoreMillis, queryMillis));
+    }
+
+    @Test
+    public void editKeepsTrigramsInSync() throws Exception {
+        Note note = createNotes(1).get(0);
+        long id = repository.insertNoteSync(note);
+        note.setId(id);
+
+        // 预热后计时，update在写入线程执行，提交一个空任务等待它完成
+        for (int i = 0; i <= WARM_UP_ROUNDS; i++) {
+            note.setContent(note.getContent() + "。追加" + i);
+            long start = SystemClock.elapsedRealtimeNanos();
+            repository.update(note);
+            AppExecutors.writer().submit(() -> null).get();
+            if (i == WARM_UP_ROUNDS) {
+                Log.i(TAG, String.format(Locale.ROOT, "edit one note: %.2fms",
+                        (SystemClock.elapsedRealtimeNanos() - start) / 1e6));
+            }
+        }
+
+        Set<String> indexed = new HashSet<>();
+        for (NoteTrigram trigram : db.noteDao().getTrigramsByNoteId(id)) {
+            assertEquals(USER_ID, trigram.getUserId());
+            indexed.add(trigram.getGram());
+        }
+        assertEquals(SearchTokenizer.buildTrigrams(note.getTitle(), note.getContent()), indexed);
+    }
+
+    private String queryString(String sql) {
+        try (Cursor cursor = db.getOpenHelper().getReadableDatabase().query(sql)) {
+            assertTrue(cursor.moveToFirst());
+            return cursor.getString(0);
+        }
+    }
+
+    private long queryLong(String sql) {
+        try (Cursor cursor = db.getOpenHelper().getReadableDatabase().query(sql)) {
+            assertTrue(cursor.moveToFirst());
+            return cursor.getLong(0);
+        }
+    }
+
+    private static NoteRepository.NoteBatchSource sourceOf(List<Note> notes) {
+        int[] offset = {0};
+        return () -> {
+            int from = offset[0];
+            int to = Math.min(from + BATCH_SIZE, notes.size());
+            offset[0] = to;
+            return new ArrayList<>(notes.subList(from, to));
+        };
+    }
+
+    /**
+     * 由固定种子生成中英文混合的笔记，每条正文约300个字符，每次运行的数据相同
+     */
+    private static List<Note> createNotes(int count) {
+        Random random = new Random(SEED);
+        List<Note> notes = new ArrayList<>(count);
+        for (int i = 1; i <= count; i++) {
+            StringBuilder content = new StringBuilder();
+            while (content.length() < 300) {
+                content.append(WORDS[random.nextInt(WORDS.length)]);
+                content.append(random.nextInt(4) == 0 ? "，" : " ");
+            }
+            Note note = new Note();
+            note.setId(i);
+            note.setUserId(USER_ID);
+            note.setTitle(WORDS[random.nextInt(WORDS.length)] + " " + WORDS[random.nextInt(WORDS.length)]);
+            note.setContent(content.toString());
+            notes.add(note);
+        }
+        return notes;
+    }
+}
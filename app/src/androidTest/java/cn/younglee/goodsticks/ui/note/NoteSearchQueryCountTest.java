@@ -0,0 +1,107 @@
+package cn.younglee.goodsticks.ui.note;
+
+import android.app.Application;
+import android.app.Instrumentation;
+import android.os.SystemClock;
+
+import androidx.lifecycle.Observer;
+import androidx.paging.PagingData;
+import androidx.room.Room;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import cn.younglee.goodsticks.data.database.AppDatabase;
+import cn.younglee.goodsticks.data.entity.Note;
+import cn.younglee.goodsticks.data.entity.NoteSummary;
+import cn.younglee.goodsticks.data.repository.NoteRepository;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * 统计逐字输入搜索词时执行的全文检索SQL次数
+ * 防抖后连续输入只应执行一次搜索，之后笔记变化时也只有当前的搜索会重新执行
+ */
+@RunWith(AndroidJUnit4.class)
+public class NoteSearchQueryCountTest {
+    private static final long USER_ID = 1;
+    private static final String QUERY = "hello";
+
+    // 比NoteViewModel的防抖时间短，模拟连续输入
+    private static final long KEYSTROKE_INTERVAL_MS = 100;
+    private static final long TIMEOUT_MS = 5000;
+    // 等待可能迟到的多余查询
+    private static final long SETTLE_MS = 1000;
+
+    private final AtomicInteger searchCount = new AtomicInteger();
+    private final Observer<PagingData<NoteSummary>> observer = data -> { };
+
+    private Instrumentation instrumentation;
+    private AppDatabase db;
+    private NoteRepository repository;
+    private NoteViewModel viewModel;
+
+    @Before
+    public void setUp() {
+        instrumentation = InstrumentationRegistry.getInstrumentation();
+        Application application = (Application) instrumentation.getTargetContext().getApplicationContext();
+        db = Room.inMemoryDatabaseBuilder(application, AppDatabase.class)
+                .setQueryCallback((sql, args) -> {
+                    if (sql.contains("notes_fts MATCH")) {
+                        searchCount.incrementAndGet();
+                    }
+                }, Runnable::run)
+                .build();
+        repository = new NoteRepository(db, USER_ID);
+        repository.insertNoteSync(createNote("hello world"));
+
+        instrumentation.runOnMainSync(() -> {
+            viewModel = new NoteViewModel(application, repository);
+            viewModel.getNotes().observeForever(observer);
+        });
+    }
+
+    @After
+    public void tearDown() {
+        instrumentation.runOnMainSync(() -> viewModel.getNotes().removeObserver(observer));
+        db.close();
+    }
+
+    @Test
+    public void typingRunsOneSearchAndOnlyItReRunsOnChange() {
+        for (int i = 1; i <= QUERY.length(); i++) {
+            String prefix = QUERY.substring(0, i);
+            instrumentation.runOnMainSync(() -> viewModel.setSearchQuery(prefix));
+            SystemClock.sleep(KEYSTROKE_INTERVAL_MS);
+        }
+        awaitCount(1);
+        assertEquals(1, searchCount.get());
+
+        // 笔记变化后只有当前搜索重新执行，输入过程中的前缀不会留下仍在观察的查询
+        repository.insertNoteSync(createNote("hello again"));
+        awaitCount(2);
+        assertEquals(2, searchCount.get());
+    }
+
+    private void awaitCount(int expected) {
+        long deadline = SystemClock.uptimeMillis() + TIMEOUT_MS;
+        while (searchCount.get() < expected && SystemClock.uptimeMillis() < deadline) {
+            SystemClock.sleep(20);
+        }
+        SystemClock.sleep(SETTLE_MS);
+    }
+
+    private static Note createNote(String content) {
+        Note note = new Note();
+        note.setUserId(USER_ID);
+        note.setTitle("test");
+        note.setContent(content);
+        return note;
+    }
+}
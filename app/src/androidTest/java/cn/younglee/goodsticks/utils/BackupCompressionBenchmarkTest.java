@@ -0,0 +1,160 @@
+package cn.younglee.goodsticks.utils;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+
+import okio.Buffer;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import cn.younglee.goodsticks.data.entity.Note;
+import cn.younglee.goodsticks.data.entity.User;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 备份体积和耗时：未压缩的JSON与WebDavUtils实际上传的gzip请求体对比
+ * 笔记内容由固定种子随机生成的中英文混合文本组成，避免重复文本带来过高的压缩率。结果输出到logcat：
+ * adb logcat -s BackupCompressionBenchmark
+ */
+@RunWith(AndroidJUnit4.class)
+public class BackupCompressionBenchmarkTest {
+    private static final String TAG = "BackupCompressionBenchmark";
+
+    private static final int NOTE_COUNT = 10_000;
+    private static final int WARM_UP_ROUNDS = 2;
+    private static final int ROUNDS = 5;
+
+    private static final String CHINESE =
+            "的一是在不了有和人这中大为上个国我以要他时来用们生到作地于出就分对成会可主发年动同工也能下过子说产种面而方后多定行学法所民得经";
+    private static final String[] WORDS = {
+            "meeting", "todo", "shopping", "project", "review", "deadline", "idea", "call", "book", "travel"};
+
+    // 与WebDavUtils相同的配置
+    private final Gson gson = new GsonBuilder().setDateFormat("yyyy-MM-dd HH:mm:ss").create();
+
+    @Test
+    public void compareBackupSizeAndTime() throws IOException {
+        List<Note> notes = createNotes(NOTE_COUNT);
+        User user = new User("benchmark", "password");
+        WebDavUtils.NoteBatchLoader loader = (afterId, limit) -> {
+            List<Note> batch = new ArrayList<>(limit);
+            for (Note note : notes) {
+                if (note.getId() > afterId && batch.size() < limit) {
+                    batch.add(note);
+                }
+            }
+            return batch;
+        };
+
+        for (int i = 0; i < WARM_UP_ROUNDS; i++) {
+            writePlain(user, notes);
+            writeGzip(user, loader);
+        }
+
+        long plainNanos = 0;
+        long gzipNanos = 0;
+        long plainBytes = 0;
+        long gzipBytes = 0;
+        for (int i = 0; i < ROUNDS; i++) {
+            long start = SystemClock.elapsedRealtimeNanos();
+            plainBytes = writePlain(user, notes).size();
+            plainNanos += SystemClock.elapsedRealtimeNanos() - start;
+
+            start = SystemClock.elapsedRealtimeNanos();
+            Buffer gzip = writeGzip(user, loader);
+            gzipNanos += SystemClock.elapsedRealtimeNanos() - start;
+            gzipBytes = gzip.size();
+
+            // 解压后应与未压缩的JSON长度一致
+            assertEquals(plainBytes, inflatedSize(gzip));
+        }
+        assertTrue(gzipBytes < plainBytes);
+
+        Log.i(TAG, String.format(Locale.ROOT,
+                "%d notes: plain=%dKB %.1fms gzip=%dKB %.1fms ratio=%.2f",
+                NOTE_COUNT, plainBytes / 1024, plainNanos / 1e6 / ROUNDS,
+                gzipBytes / 1024, gzipNanos / 1e6 / ROUNDS, (double) gzipBytes / plainBytes));
+    }
+
+    /**
+     * 按备份的JSON结构写出未压缩的数据，相当于压缩之前的备份格式
+     */
+    private Buffer writePlain(User user, List<Note> notes) throws IOException {
+        Buffer buffer = new Buffer();
+        JsonWriter writer = gson.newJsonWriter(new OutputStreamWriter(buffer.outputStream(), StandardCharsets.UTF_8));
+        writer.beginObject();
+        writer.name("user");
+        gson.toJson(user, User.class, writer);
+        writer.name("notes");
+        writer.beginArray();
+        for (Note note : notes) {
+            gson.toJson(note, Note.class, writer);
+        }
+        writer.endArray();
+        writer.endObject();
+        writer.flush();
+        return buffer;
+    }
+
+    private static Buffer writeGzip(User user, WebDavUtils.NoteBatchLoader loader) throws IOException {
+        Buffer buffer = new Buffer();
+        new WebDavUtils.BackupRequestBody(user, null, null, loader).writeTo(buffer);
+        return buffer;
+    }
+
+    private static long inflatedSize(Buffer gzip) throws IOException {
+        long size = 0;
+        try (InputStream in = new GZIPInputStream(gzip.clone().inputStream())) {
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                size += read;
+            }
+        }
+        return size;
+    }
+
+    private static List<Note> createNotes(int count) {
+        Random random = new Random(42);
+        List<Note> notes = new ArrayList<>(count);
+        for (int i = 1; i <= count; i++) {
+            Note note = new Note();
+            note.setId(i);
+            note.setUserId(1);
+            note.setTitle(randomText(random, 4 + random.nextInt(12)));
+            note.setContent(randomText(random, 50 + random.nextInt(400)));
+            notes.add(note);
+        }
+        return notes;
+    }
+
+    private static String randomText(Random random, int length) {
+        StringBuilder text = new StringBuilder(length * 2);
+        while (text.length() < length) {
+            if (random.nextInt(5) == 0) {
+                text.append(' ').append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+            } else {
+                text.append(CHINESE.charAt(random.nextInt(CHINESE.length())));
+            }
+        }
+        return text.toString();
+    }
+}
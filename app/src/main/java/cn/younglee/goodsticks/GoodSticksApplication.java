@@ -5,53 +5,89 @@ import android.content.Context;
 import android.content.SharedPreferences;
 
 import androidx.appcompat.app.AppCompatDelegate;
+import androidx.core.content.ContextCompat;
 import androidx.security.crypto.EncryptedSharedPreferences;
 import androidx.security.crypto.MasterKey;
 
 import java.io.IOException;
 import java.security.GeneralSecurityException;
+import java.util.concurrent.CompletableFuture;
 
+import cn.younglee.goodsticks.utils.AppExecutors;
+import cn.younglee.goodsticks.utils.AppStartup;
+import cn.younglee.goodsticks.utils.AvatarStore;
+import cn.younglee.goodsticks.utils.CachedPreferences;
 import cn.younglee.goodsticks.utils.DataMigrationUtil;
+import cn.younglee.goodsticks.utils.ImageStore;
 import cn.younglee.goodsticks.utils.ThemeUtils;
 
 public class GoodSticksApplication extends Application {
     private static GoodSticksApplication instance;
-    private SharedPreferences sharedPreferences;
+    private CompletableFuture<CachedPreferences> sharedPreferences;
     
     @Override
     public void onCreate() {
         super.onCreate();
         instance = this;
-        initEncryptedSharedPreferences();
-        
-        // 应用保存的主题设置
-        ThemeUtils.applyTheme(this);
         
         // 强制使用浅色模式
-        sharedPreferences.edit().putBoolean("dark_mode", false).apply();
         AppCompatDelegate.setDefaultNightMode(AppCompatDelegate.MODE_NIGHT_NO);
         
-        // 执行数据迁移
-        DataMigrationUtil.migrateNotesToCurrentUser(this);
+        // 加密配置和数据库在后台并行初始化，主线程不等待Keystore
+        sharedPreferences = CompletableFuture.supplyAsync(this::createSecureSharedPreferences,
+                AppExecutors.io());
+        AppStartup.begin(this, sharedPreferences);
+        
+        // 应用保存的主题设置
+        sharedPreferences.thenRunAsync(() -> ThemeUtils.applyTheme(this), ContextCompat.getMainExecutor(this));
+        
+        // 依赖配置的后台任务
+        sharedPreferences.thenRunAsync(this::onSecureSharedPreferencesReady, AppExecutors.background());
     }
     
-    private void initEncryptedSharedPreferences() {
+    private CachedPreferences createSecureSharedPreferences() {
+        SharedPreferences encrypted;
         try {
             MasterKey masterKey = new MasterKey.Builder(this)
                     .setKeyScheme(MasterKey.KeyScheme.AES256_GCM)
                     .build();
                     
-            sharedPreferences = EncryptedSharedPreferences.create(
+            encrypted = EncryptedSharedPreferences.create(
                     this,
                     "secure_prefs",
                     masterKey,
                     EncryptedSharedPreferences.PrefKeyEncryptionScheme.AES256_SIV,
                     EncryptedSharedPreferences.PrefValueEncryptionScheme.AES256_GCM
             );
-        } catch (GeneralSecurityException | IOException e) {
+            // 一次性解密到内存，之后的读取不再逐次解密
+            return new CachedPreferences(encrypted);
+        } catch (GeneralSecurityException | IOException | SecurityException e) {
             e.printStackTrace();
             // 如果加密失败，使用普通的SharedPreferences
-            sharedPreferences = getSharedPreferences("prefs", Context.MODE_PRIVATE);
+            return new CachedPreferences(getSharedPreferences("prefs", Context.MODE_PRIVATE));
+        }
+    }
+    
+    private void onSecureSharedPreferencesReady() {
+        CachedPreferences prefs = sharedPreferences.join();
+        prefs.edit().putBoolean("dark_mode", false).apply();
+        
+        // 执行数据迁移
+        DataMigrationUtil.migrateNotesToCurrentUser(this);
+        
+        // 把旧版本保存在配置中的头像迁移为文件
+        AvatarStore.migrateAll(this);
+        
+        // 清理没有笔记引用的图片
+        ImageStore.scheduleGarbageCollection(this);
+    }
+    
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        // 界面全部隐藏后进程随时可能被回收，把排队中的配置修改写入磁盘
+        if (level >= TRIM_MEMORY_UI_HIDDEN && isSecureSharedPreferencesReady()) {
+            sharedPreferences.join().awaitPendingWrites();
         }
     }
     
@@ -59,7 +95,17 @@ public class GoodSticksApplication extends Application {
         return instance;
     }
     
+    /**
+     * 获取加密配置，后台初始化尚未完成时等待
+     */
     public SharedPreferences getSecureSharedPreferences() {
-        return sharedPreferences;
+        return sharedPreferences.join();
+    }
+    
+    /**
+     * @return 加密配置是否已成功初始化，此时读取配置不会阻塞也不会抛出异常
+     */
+    public boolean isSecureSharedPreferencesReady() {
+        return sharedPreferences.isDone() && !sharedPreferences.isCompletedExceptionally();
     }
-} 
\ No newline at end of file
+}
@@ -12,6 +12,7 @@ import com.google.android.material.navigation.NavigationBarView;
 import cn.younglee.goodsticks.databinding.ActivityMainBinding;
 import cn.younglee.goodsticks.ui.home.HomeFragment;
 import cn.younglee.goodsticks.ui.settings.SettingsFragment;
+import cn.younglee.goodsticks.utils.AppStartup;
 import cn.younglee.goodsticks.utils.ThemeUtils;
 
 public class MainActivity extends AppCompatActivity {
@@ -39,9 +40,10 @@ public class MainActivity extends AppCompatActivity {
                 // 清除记录
                 getSecurePreferences().edit().remove("last_fragment").apply();
                         
-                // 切换到设置页面
+                // 切换到设置页面，设置页没有列表，显示后即可操作；首页由HomeFragment在列表加载后记录
                 binding.bottomNavigation.setSelectedItemId(R.id.navigation_settings);
                 switchFragment(settingsFragment);
+                AppStartup.reportInteractive(this);
             }
         } else {
             // Activity重建，恢复Fragment引用
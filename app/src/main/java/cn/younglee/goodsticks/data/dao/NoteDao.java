@@ -1,21 +1,30 @@
 package cn.younglee.goodsticks.data.dao;
 
 import androidx.lifecycle.LiveData;
+import androidx.paging.PagingSource;
 import androidx.room.Dao;
 import androidx.room.Delete;
 import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
 import androidx.room.Query;
 import androidx.room.Update;
 
 import java.util.List;
 
 import cn.younglee.goodsticks.data.entity.Note;
+import cn.younglee.goodsticks.data.entity.NoteContent;
+import cn.younglee.goodsticks.data.entity.NoteSearchResult;
+import cn.younglee.goodsticks.data.entity.NoteSummary;
+import cn.younglee.goodsticks.data.entity.NoteTrigram;
 
 @Dao
 public interface NoteDao {
     @Insert
     long insert(Note note);
     
+    @Insert
+    List<Long> insertAll(List<Note> notes);
+    
     @Update
     void update(Note note);
     
@@ -25,30 +34,132 @@ public interface NoteDao {
     @Query("DELETE FROM notes WHERE id = :id")
     void deleteById(long id);
     
-    @Query("SELECT * FROM notes ORDER BY is_pinned DESC, modified_date DESC")
-    LiveData<List<Note>> getAllNotes();
+    // 首页卡片需要的列，正文只截取预览部分
+    String SUMMARY_COLUMNS = "notes.id, notes.title, " +
+            "substr(notes.content, 1, " + NoteSummary.PREVIEW_LENGTH + ") AS content_preview, " +
+            "notes.modified_date, notes.image_path, notes.is_pinned, notes.color, notes.content_hash";
     
-    @Query("SELECT * FROM notes WHERE user_id = :userId ORDER BY is_pinned DESC, modified_date DESC")
-    LiveData<List<Note>> getNotesByUserId(long userId);
+    // 分页查询，列表只加载可见范围附近的页，数据变化时由Room使PagingSource失效并重新加载
+    @Query("SELECT " + SUMMARY_COLUMNS + " FROM notes ORDER BY is_pinned DESC, modified_date DESC")
+    PagingSource<Integer, NoteSummary> getAllNoteSummariesPaged();
+    
+    // 查询语句同时供执行计划测试使用，测试检查的与实际执行的是同一条SQL
+    String SUMMARIES_BY_USER_QUERY = "SELECT " + SUMMARY_COLUMNS + " FROM notes WHERE user_id = :userId " +
+            "ORDER BY is_pinned DESC, modified_date DESC";
+    
+    @Query(SUMMARIES_BY_USER_QUERY)
+    PagingSource<Integer, NoteSummary> getNoteSummariesByUserIdPaged(long userId);
     
     @Query("SELECT * FROM notes WHERE user_id = :userId ORDER BY is_pinned DESC, modified_date DESC")
     List<Note> getNotesByUserIdSync(long userId);
     
+    // 按ID分批读取，用于流式备份
+    @Query("SELECT * FROM notes WHERE user_id = :userId AND id > :afterId ORDER BY id LIMIT :limit")
+    List<Note> getNotesByUserIdAfter(long userId, long afterId, int limit);
+    
     @Query("SELECT * FROM notes WHERE id = :id")
     LiveData<Note> getNoteById(long id);
     
     @Query("SELECT * FROM notes WHERE id = :id")
     Note getNoteByIdSync(long id);
     
-    @Query("SELECT * FROM notes WHERE title LIKE '%' || :searchQuery || '%' OR content LIKE '%' || :searchQuery || '%' ORDER BY is_pinned DESC, modified_date DESC")
-    LiveData<List<Note>> searchNotes(String searchQuery);
+    // 全文检索，matchQuery为FTS4 MATCH表达式
+    // 使用CROSS JOIN固定由FTS驱动查询，开销只与命中数相关；否则规划器会沿复合索引遍历用户全部笔记并逐行执行MATCH
+    @Query("SELECT " + SUMMARY_COLUMNS + " FROM notes_fts CROSS JOIN notes ON notes.id = notes_fts.rowid " +
+            "WHERE notes_fts MATCH :matchQuery ORDER BY notes.is_pinned DESC, notes.modified_date DESC")
+    LiveData<List<NoteSummary>> searchNotes(String matchQuery);
+    
+    String SEARCH_BY_USER_QUERY = "SELECT " + SUMMARY_COLUMNS + " FROM notes_fts " +
+            "CROSS JOIN notes ON notes.id = notes_fts.rowid " +
+            "WHERE notes_fts MATCH :matchQuery AND notes.user_id = :userId " +
+            "ORDER BY notes.is_pinned DESC, notes.modified_date DESC";
     
-    @Query("SELECT * FROM notes WHERE user_id = :userId AND (title LIKE '%' || :searchQuery || '%' OR content LIKE '%' || :searchQuery || '%') ORDER BY is_pinned DESC, modified_date DESC")
-    LiveData<List<Note>> searchNotesByUserId(long userId, String searchQuery);
+    @Query(SEARCH_BY_USER_QUERY)
+    LiveData<List<NoteSummary>> searchNotesByUserId(long userId, String matchQuery);
+    
+    // 相关度排序使用的列：FTS匹配信息，摘要由NoteRepository在排序后为保留的结果定位
+    String RANKED_COLUMNS = SUMMARY_COLUMNS + ", matchinfo(notes_fts, 'pcnalx') AS match_info, " +
+            "1 AS snippet_start, NULL AS snippet";
+    
+    // 相关度搜索，排序由NoteRepository根据match_info计算BM25后完成
+    @Query("SELECT " + RANKED_COLUMNS + " FROM notes_fts CROSS JOIN notes ON notes.id = notes_fts.rowid " +
+            "WHERE notes_fts MATCH :matchQuery")
+    LiveData<List<NoteSearchResult>> searchRanked(String matchQuery);
+    
+    String RANKED_SEARCH_BY_USER_QUERY = "SELECT " + RANKED_COLUMNS + " FROM notes_fts " +
+            "CROSS JOIN notes ON notes.id = notes_fts.rowid " +
+            "WHERE notes_fts MATCH :matchQuery AND notes.user_id = :userId";
+    
+    @Query(RANKED_SEARCH_BY_USER_QUERY)
+    LiveData<List<NoteSearchResult>> searchRankedByUserId(long userId, String matchQuery);
+    
+    // 相关度最高的结果的完整正文，用于定位摘要
+    @Query("SELECT id, content FROM notes WHERE id IN (:ids)")
+    List<NoteContent> getContentsByIds(List<Long> ids);
+    
+    // 三元组索引，笔记删除时由触发器清理
+    @Insert(onConflict = OnConflictStrategy.IGNORE)
+    void insertTrigrams(List<NoteTrigram> trigrams);
+    
+    @Delete
+    void deleteTrigrams(List<NoteTrigram> trigrams);
+    
+    // 沿note_id索引读取，WITHOUT ROWID表的索引包含主键的全部列，不需要回表
+    @Query("SELECT gram, user_id, note_id FROM note_trigrams WHERE note_id = :noteId")
+    List<NoteTrigram> getTrigramsByNoteId(long noteId);
+    
+    // 容错搜索的候选笔记：按与搜索词共有的片段数排序，只取前limit条，查询沿主键索引进行
+    @Query("SELECT note_id FROM note_trigrams WHERE gram IN (:grams) " +
+            "GROUP BY note_id HAVING COUNT(*) >= :minShared ORDER BY COUNT(*) DESC LIMIT :limit")
+    List<Long> getTrigramCandidates(List<String> grams, int minShared, int limit);
+    
+    @Query("SELECT note_id FROM note_trigrams WHERE gram IN (:grams) AND user_id = :userId " +
+            "GROUP BY note_id HAVING COUNT(*) >= :minShared ORDER BY COUNT(*) DESC LIMIT :limit")
+    List<Long> getTrigramCandidatesByUserId(long userId, List<String> grams, int minShared, int limit);
+    
+    // 容错搜索结果，没有FTS匹配信息，摘要取正文开头
+    @Query("SELECT " + SUMMARY_COLUMNS + ", NULL AS match_info, 1 AS snippet_start, " +
+            "substr(notes.content, 1, " + NoteSearchResult.SNIPPET_LENGTH + ") AS snippet " +
+            "FROM notes WHERE id IN (:ids)")
+    List<NoteSearchResult> getSearchResultsByIds(List<Long> ids);
+    
+    // 所有用户的笔记引用的图片，图片文件在用户之间共享
+    @Query("SELECT DISTINCT image_path FROM notes WHERE image_path IS NOT NULL AND image_path != ''")
+    List<String> getReferencedImagePaths();
     
     @Query("UPDATE notes SET is_pinned = :isPinned WHERE id = :id")
     void updatePinStatus(long id, boolean isPinned);
     
     @Query("DELETE FROM notes WHERE user_id = :userId")
     void deleteAllNotesByUserId(long userId);
+    
+    // 将无用户ID的旧笔记关联到指定用户，经由Room执行，分页列表等观察者会收到变更通知
+    @Query("UPDATE notes SET user_id = :userId WHERE user_id = -1 OR user_id IS NULL")
+    int assignOrphanNotesToUser(long userId);
+    
+    // 已被其他用户的笔记占用的ID，恢复时跳过这些笔记
+    @Query("SELECT id FROM notes WHERE user_id != :userId AND id IN (:ids)")
+    List<Long> getIdsOwnedByOthers(long userId, List<Long> ids);
+    
+    // 只删除属于该用户的笔记，增量恢复时用于删除和覆盖
+    @Query("DELETE FROM notes WHERE user_id = :userId AND id IN (:ids)")
+    void deleteByIdsForUser(long userId, List<Long> ids);
+    
+    // 变更日志，由触发器写入
+    @Query("SELECT MAX(changed_at) FROM note_changes WHERE user_id = :userId")
+    Long getLatestChangeTime(long userId);
+    
+    // 按ID分批读取水位之后新增或修改的笔记，用于增量备份
+    // 水位包含在内，同一毫秒内的后续变更不会丢失，重复写出的笔记在恢复时会被覆盖
+    @Query("SELECT notes.* FROM note_changes JOIN notes ON notes.id = note_changes.note_id " +
+            "WHERE note_changes.user_id = :userId AND note_changes.changed_at >= :since " +
+            "AND note_changes.deleted = 0 AND notes.id > :afterId ORDER BY notes.id LIMIT :limit")
+    List<Note> getChangedNotesByUserIdAfter(long userId, long since, long afterId, int limit);
+    
+    @Query("SELECT note_id FROM note_changes WHERE user_id = :userId AND changed_at >= :since AND deleted = 1")
+    List<Long> getDeletedNoteIdsSince(long userId, long since);
+    
+    // 水位之前的变更已经备份，不再需要
+    @Query("DELETE FROM note_changes WHERE user_id = :userId AND changed_at < :watermark")
+    void pruneChanges(long userId, long watermark);
 } 
\ No newline at end of file
@@ -1,8 +1,12 @@
 package cn.younglee.goodsticks.data.database;
 
+import android.content.ContentValues;
 import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.VisibleForTesting;
 import androidx.room.Database;
 import androidx.room.Room;
 import androidx.room.RoomDatabase;
@@ -10,16 +14,19 @@ import androidx.room.TypeConverters;
 import androidx.room.migration.Migration;
 import androidx.sqlite.db.SupportSQLiteDatabase;
 
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-
 import cn.younglee.goodsticks.data.converter.DateConverter;
 import cn.younglee.goodsticks.data.dao.NoteDao;
 import cn.younglee.goodsticks.data.dao.UserDao;
 import cn.younglee.goodsticks.data.entity.Note;
+import cn.younglee.goodsticks.data.entity.NoteChange;
+import cn.younglee.goodsticks.data.entity.NoteFts;
+import cn.younglee.goodsticks.data.entity.NoteTrigram;
 import cn.younglee.goodsticks.data.entity.User;
+import cn.younglee.goodsticks.utils.AppExecutors;
+import cn.younglee.goodsticks.utils.ContentHash;
+import cn.younglee.goodsticks.utils.SearchTokenizer;
 
-@Database(entities = {Note.class, User.class}, version = 2, exportSchema = false)
+@Database(entities = {Note.class, NoteFts.class, NoteChange.class, NoteTrigram.class, User.class}, version = 10, exportSchema = false)
 @TypeConverters({DateConverter.class})
 public abstract class AppDatabase extends RoomDatabase {
     
@@ -27,9 +34,6 @@ public abstract class AppDatabase extends RoomDatabase {
     public abstract UserDao userDao();
     
     private static volatile AppDatabase INSTANCE;
-    private static final int NUMBER_OF_THREADS = 4;
-    public static final ExecutorService databaseWriteExecutor =
-            Executors.newFixedThreadPool(NUMBER_OF_THREADS);
     
     // 数据库迁移策略 - 从版本1到版本2
     static final Migration MIGRATION_1_2 = new Migration(1, 2) {
@@ -40,14 +44,271 @@ public abstract class AppDatabase extends RoomDatabase {
         }
     };
     
+    // 数据库迁移策略 - 从版本2到版本3
+    static final Migration MIGRATION_2_3 = new Migration(2, 3) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            // 创建title、content的FTS4全文索引
+            recreateNotesFts(database, "title", "content");
+        }
+    };
+    
+    // 数据库迁移策略 - 从版本3到版本4
+    static final Migration MIGRATION_3_4 = new Migration(3, 4) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            // 添加中文二元组分词列，并改为只索引该列
+            database.execSQL("ALTER TABLE notes ADD COLUMN search_text TEXT");
+            dropNotesFts(database);
+            backfillNotes(database, (title, content, imagePath) -> {
+                ContentValues values = new ContentValues();
+                values.put("search_text", SearchTokenizer.buildIndexText(title, content));
+                return values;
+            });
+            recreateNotesFts(database, "search_text");
+        }
+    };
+    
+    // 数据库迁移策略 - 从版本4到版本5
+    static final Migration MIGRATION_4_5 = new Migration(4, 5) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            // 添加列表排序使用的复合索引
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_notes_user_id_is_pinned_modified_date` " +
+                    "ON `notes` (`user_id`, `is_pinned`, `modified_date`)");
+        }
+    };
+    
+    // 数据库迁移策略 - 从版本5到版本6
+    static final Migration MIGRATION_5_6 = new Migration(5, 6) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            // 添加笔记变更日志，已有笔记不需要写入日志，升级后的第一次备份总是全量备份
+            database.execSQL("CREATE TABLE IF NOT EXISTS `note_changes` (`note_id` INTEGER NOT NULL, " +
+                    "`user_id` INTEGER NOT NULL, `changed_at` INTEGER NOT NULL, `deleted` INTEGER NOT NULL, " +
+                    "PRIMARY KEY(`note_id`))");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_note_changes_user_id_changed_at` " +
+                    "ON `note_changes` (`user_id`, `changed_at`)");
+            createNoteChangeTriggers(database);
+        }
+    };
+    
+    // 数据库迁移策略 - 从版本6到版本7
+    static final Migration MIGRATION_6_7 = new Migration(6, 7) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            // 添加标题的全拼和首字母列，并加入全文索引
+            database.execSQL("ALTER TABLE notes ADD COLUMN title_pinyin TEXT");
+            database.execSQL("ALTER TABLE notes ADD COLUMN title_initials TEXT");
+            dropNotesFts(database);
+            // 回填只改动派生列，不记录到变更日志，避免下次增量备份重新上传全部笔记
+            dropNoteChangeTriggers(database);
+            backfillNotes(database, (title, content, imagePath) -> {
+                ContentValues values = new ContentValues();
+                values.put("title_pinyin", SearchTokenizer.buildPinyinText(title));
+                values.put("title_initials", SearchTokenizer.buildInitialsText(title));
+                return values;
+            });
+            createNoteChangeTriggers(database);
+            recreateNotesFts(database, "search_text", "title_pinyin", "title_initials");
+        }
+    };
+    
+    // 数据库迁移策略 - 从版本7到版本8
+    static final Migration MIGRATION_7_8 = new Migration(7, 8) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            // 添加容错搜索的三元组索引，并为已有笔记建立索引
+            database.execSQL("CREATE TABLE IF NOT EXISTS `note_trigrams` (`gram` TEXT NOT NULL, " +
+                    "`user_id` INTEGER NOT NULL, `note_id` INTEGER NOT NULL, " +
+                    "PRIMARY KEY(`gram`, `user_id`, `note_id`))");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_note_trigrams_note_id` " +
+                    "ON `note_trigrams` (`note_id`)");
+            createTrigramTriggers(database);
+            
+            try (Cursor cursor = database.query("SELECT id, user_id, title, content FROM notes")) {
+                while (cursor.moveToNext()) {
+                    for (String gram : SearchTokenizer.buildTrigrams(cursor.getString(2), cursor.getString(3))) {
+                        ContentValues values = new ContentValues();
+                        values.put("gram", gram);
+                        values.put("user_id", cursor.getLong(1));
+                        values.put("note_id", cursor.getLong(0));
+                        database.insert("note_trigrams", SQLiteDatabase.CONFLICT_IGNORE, values);
+                    }
+                }
+            }
+        }
+    };
+    
+    // 数据库迁移策略 - 从版本8到版本9
+    static final Migration MIGRATION_8_9 = new Migration(8, 9) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            // 添加内容指纹列并回填
+            database.execSQL("ALTER TABLE notes ADD COLUMN content_hash INTEGER NOT NULL DEFAULT 0");
+            // 回填只改动派生列，暂时移除全文索引和变更日志的触发器，之后重建索引
+            dropNotesFts(database);
+            dropNoteChangeTriggers(database);
+            backfillNotes(database, (title, content, imagePath) -> {
+                ContentValues values = new ContentValues();
+                values.put("content_hash", ContentHash.of(title, content, imagePath));
+                return values;
+            });
+            createNoteChangeTriggers(database);
+            recreateNotesFts(database, "search_text", "title_pinyin", "title_initials");
+        }
+    };
+    
+    // 数据库迁移策略 - 从版本9到版本10
+    static final Migration MIGRATION_9_10 = new Migration(9, 10) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            // 三元组表改为WITHOUT ROWID，按主键顺序复制已有片段
+            database.execSQL("DROP TRIGGER IF EXISTS note_trigrams_AFTER_DELETE");
+            database.execSQL("DROP TRIGGER IF EXISTS note_trigrams_AFTER_UPDATE_USER");
+            database.execSQL("DROP INDEX IF EXISTS `index_note_trigrams_note_id`");
+            database.execSQL("ALTER TABLE `note_trigrams` RENAME TO `note_trigrams_old`");
+            createTrigramTable(database);
+            database.execSQL("INSERT INTO `note_trigrams` (`gram`, `user_id`, `note_id`) " +
+                    "SELECT `gram`, `user_id`, `note_id` FROM `note_trigrams_old` " +
+                    "ORDER BY `gram`, `user_id`, `note_id`");
+            database.execSQL("DROP TABLE `note_trigrams_old`");
+            createTrigramTriggers(database);
+        }
+    };
+    
+    /**
+     * 创建Room无法通过注解声明的表结构和触发器，新建数据库时调用
+     * Room按NoteTrigram建立的是普通rowid表，主键另有一个自动索引，加上note_id索引每个片段要存三份，这里换成WITHOUT ROWID表
+     */
+    @VisibleForTesting
+    public static void createRawSchema(SupportSQLiteDatabase database) {
+        database.execSQL("DROP TABLE IF EXISTS `note_trigrams`");
+        createTrigramTable(database);
+        createNoteChangeTriggers(database);
+        createTrigramTriggers(database);
+    }
+    
+    /**
+     * 创建note_trigrams表：WITHOUT ROWID表的行直接按主键(gram, user_id, note_id)存放，
+     * 片段只在表中和note_id索引中各存一份。列与索引和NoteTrigram实体一致，Room的结构校验可以通过
+     */
+    private static void createTrigramTable(SupportSQLiteDatabase database) {
+        database.execSQL("CREATE TABLE IF NOT EXISTS `note_trigrams` (`gram` TEXT NOT NULL, " +
+                "`user_id` INTEGER NOT NULL, `note_id` INTEGER NOT NULL, " +
+                "PRIMARY KEY(`gram`, `user_id`, `note_id`)) WITHOUT ROWID");
+        database.execSQL("CREATE INDEX IF NOT EXISTS `index_note_trigrams_note_id` " +
+                "ON `note_trigrams` (`note_id`)");
+    }
+    
+    /**
+     * 创建维护note_trigrams的触发器：删除笔记时清理其片段，笔记改变所属用户时同步user_id
+     * 片段的写入依赖Java分词，由NoteRepository完成
+     */
+    private static void createTrigramTriggers(SupportSQLiteDatabase database) {
+        database.execSQL("CREATE TRIGGER IF NOT EXISTS note_trigrams_AFTER_DELETE AFTER DELETE ON `notes` " +
+                "BEGIN DELETE FROM `note_trigrams` WHERE `note_id` = OLD.`id`; END");
+        database.execSQL("CREATE TRIGGER IF NOT EXISTS note_trigrams_AFTER_UPDATE_USER " +
+                "AFTER UPDATE OF `user_id` ON `notes` WHEN OLD.`user_id` != NEW.`user_id` " +
+                "BEGIN UPDATE `note_trigrams` SET `user_id` = NEW.`user_id` WHERE `note_id` = NEW.`id`; END");
+    }
+    
+    /**
+     * 创建维护note_changes的触发器，笔记的每次插入、更新、删除都会记录到变更日志
+     * Room不会为普通表生成触发器，新建数据库和迁移时都需要调用
+     */
+    private static void createNoteChangeTriggers(SupportSQLiteDatabase database) {
+        // 当前时间的毫秒数
+        String now = "CAST((julianday('now') - 2440587.5) * 86400000 AS INTEGER)";
+        database.execSQL("CREATE TRIGGER IF NOT EXISTS note_changes_AFTER_INSERT AFTER INSERT ON `notes` " +
+                "BEGIN INSERT OR REPLACE INTO `note_changes`(`note_id`, `user_id`, `changed_at`, `deleted`) " +
+                "VALUES (NEW.`id`, NEW.`user_id`, " + now + ", 0); END");
+        database.execSQL("CREATE TRIGGER IF NOT EXISTS note_changes_AFTER_UPDATE AFTER UPDATE ON `notes` " +
+                "BEGIN INSERT OR REPLACE INTO `note_changes`(`note_id`, `user_id`, `changed_at`, `deleted`) " +
+                "VALUES (NEW.`id`, NEW.`user_id`, " + now + ", 0); END");
+        database.execSQL("CREATE TRIGGER IF NOT EXISTS note_changes_AFTER_DELETE AFTER DELETE ON `notes` " +
+                "BEGIN INSERT OR REPLACE INTO `note_changes`(`note_id`, `user_id`, `changed_at`, `deleted`) " +
+                "VALUES (OLD.`id`, OLD.`user_id`, " + now + ", 1); END");
+    }
+    
+    private static void dropNoteChangeTriggers(SupportSQLiteDatabase database) {
+        database.execSQL("DROP TRIGGER IF EXISTS note_changes_AFTER_INSERT");
+        database.execSQL("DROP TRIGGER IF EXISTS note_changes_AFTER_UPDATE");
+        database.execSQL("DROP TRIGGER IF EXISTS note_changes_AFTER_DELETE");
+    }
+    
+    /**
+     * 按Room生成的格式重建notes_fts外部内容表及其同步触发器，并为已有笔记建立索引
+     * @param columns 需要索引的notes列
+     */
+    private static void recreateNotesFts(SupportSQLiteDatabase database, String... columns) {
+        dropNotesFts(database);
+        
+        StringBuilder definitions = new StringBuilder();
+        StringBuilder names = new StringBuilder();
+        StringBuilder values = new StringBuilder();
+        for (String column : columns) {
+            definitions.append('`').append(column).append("` TEXT, ");
+            names.append(", `").append(column).append('`');
+            values.append(", NEW.`").append(column).append('`');
+        }
+        
+        database.execSQL("CREATE VIRTUAL TABLE IF NOT EXISTS `notes_fts` USING FTS4(" +
+                definitions + "content=`notes`)");
+        
+        // 同步触发器，语句需与Room生成的保持一致
+        database.execSQL("CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_notes_fts_BEFORE_UPDATE " +
+                "BEFORE UPDATE ON `notes` BEGIN DELETE FROM `notes_fts` WHERE `docid`=OLD.`rowid`; END");
+        database.execSQL("CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_notes_fts_BEFORE_DELETE " +
+                "BEFORE DELETE ON `notes` BEGIN DELETE FROM `notes_fts` WHERE `docid`=OLD.`rowid`; END");
+        database.execSQL("CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_notes_fts_AFTER_UPDATE " +
+                "AFTER UPDATE ON `notes` BEGIN INSERT INTO `notes_fts`(`docid`" + names + ") " +
+                "VALUES (NEW.`rowid`" + values + "); END");
+        database.execSQL("CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_notes_fts_AFTER_INSERT " +
+                "AFTER INSERT ON `notes` BEGIN INSERT INTO `notes_fts`(`docid`" + names + ") " +
+                "VALUES (NEW.`rowid`" + values + "); END");
+        
+        database.execSQL("INSERT INTO `notes_fts`(`notes_fts`) VALUES('rebuild')");
+    }
+    
+    private static void dropNotesFts(SupportSQLiteDatabase database) {
+        database.execSQL("DROP TRIGGER IF EXISTS room_fts_content_sync_notes_fts_BEFORE_UPDATE");
+        database.execSQL("DROP TRIGGER IF EXISTS room_fts_content_sync_notes_fts_BEFORE_DELETE");
+        database.execSQL("DROP TRIGGER IF EXISTS room_fts_content_sync_notes_fts_AFTER_UPDATE");
+        database.execSQL("DROP TRIGGER IF EXISTS room_fts_content_sync_notes_fts_AFTER_INSERT");
+        database.execSQL("DROP TABLE IF EXISTS `notes_fts`");
+    }
+    
+    /**
+     * 在迁移中逐条计算并回填笔记的派生列
+     */
+    private static void backfillNotes(SupportSQLiteDatabase database, NoteBackfill backfill) {
+        try (Cursor cursor = database.query("SELECT id, title, content, image_path FROM notes")) {
+            while (cursor.moveToNext()) {
+                ContentValues values = backfill.compute(
+                        cursor.getString(1), cursor.getString(2), cursor.getString(3));
+                database.update("notes", SQLiteDatabase.CONFLICT_NONE, values,
+                        "id = ?", new Object[]{cursor.getLong(0)});
+            }
+        }
+    }
+    
+    private interface NoteBackfill {
+        ContentValues compute(String title, String content, String imagePath);
+    }
+    
     public static AppDatabase getDatabase(final Context context) {
         if (INSTANCE == null) {
             synchronized (AppDatabase.class) {
                 if (INSTANCE == null) {
                     INSTANCE = Room.databaseBuilder(context.getApplicationContext(),
                             AppDatabase.class, "goodsticks_database")
-                            .addMigrations(MIGRATION_1_2) // 使用迁移策略，而不是破坏性重建
+                            .addMigrations(MIGRATION_1_2, MIGRATION_2_3, MIGRATION_3_4, MIGRATION_4_5,
+                                    MIGRATION_5_6, MIGRATION_6_7, MIGRATION_7_8, MIGRATION_8_9, MIGRATION_9_10) // 使用迁移策略，而不是破坏性重建
                             .addCallback(sRoomDatabaseCallback)
+                            // 查询在读取线程池并行执行。不把事务交给写入线程：Paging的加载也以事务执行，
+                            // 不能排在备份恢复等写入任务之后；未设置时Room在查询线程池上串行执行事务
+                            .setQueryExecutor(AppExecutors.reader())
                             .build();
                 }
             }
@@ -59,9 +320,10 @@ public abstract class AppDatabase extends RoomDatabase {
         @Override
         public void onCreate(@NonNull SupportSQLiteDatabase db) {
             super.onCreate(db);
+            createRawSchema(db);
             
             // 初始化数据库后可以添加默认数据
-            databaseWriteExecutor.execute(() -> {
+            AppExecutors.writer().execute(() -> {
                 // 在这里可以初始化一些默认数据，如默认管理员账户等
                 UserDao userDao = INSTANCE.userDao();
                 // 检查是否已存在用户
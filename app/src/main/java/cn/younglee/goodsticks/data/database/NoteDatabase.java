@@ -1,41 +0,0 @@
-package cn.younglee.goodsticks.data.database;
-
-import android.content.Context;
-
-import androidx.room.Database;
-import androidx.room.Room;
-import androidx.room.RoomDatabase;
-import androidx.room.TypeConverters;
-
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-
-import cn.younglee.goodsticks.data.converter.DateConverter;
-import cn.younglee.goodsticks.data.dao.NoteDao;
-import cn.younglee.goodsticks.data.entity.Note;
-
-@Database(entities = {Note.class}, version = 1, exportSchema = false)
-@TypeConverters({DateConverter.class})
-public abstract class NoteDatabase extends RoomDatabase {
-    
-    public abstract NoteDao noteDao();
-    
-    private static volatile NoteDatabase INSTANCE;
-    private static final int NUMBER_OF_THREADS = 4;
-    public static final ExecutorService databaseWriteExecutor =
-            Executors.newFixedThreadPool(NUMBER_OF_THREADS);
-    
-    public static NoteDatabase getDatabase(final Context context) {
-        if (INSTANCE == null) {
-            synchronized (NoteDatabase.class) {
-                if (INSTANCE == null) {
-                    INSTANCE = Room.databaseBuilder(context.getApplicationContext(),
-                            NoteDatabase.class, "note_database")
-                            .fallbackToDestructiveMigration()
-                            .build();
-                }
-            }
-        }
-        return INSTANCE;
-    }
-} 
\ No newline at end of file
@@ -2,11 +2,13 @@ package cn.younglee.goodsticks.data.entity;
 
 import androidx.room.ColumnInfo;
 import androidx.room.Entity;
+import androidx.room.Index;
 import androidx.room.PrimaryKey;
 
 import java.util.Date;
 
-@Entity(tableName = "notes")
+// 列表和搜索都按user_id过滤并按置顶、修改时间倒序排列，复合索引避免全表扫描和临时排序
+@Entity(tableName = "notes", indices = {@Index(value = {"user_id", "is_pinned", "modified_date"})})
 public class Note {
     @PrimaryKey(autoGenerate = true)
     private long id;
@@ -35,6 +37,21 @@ public class Note {
     @ColumnInfo(name = "user_id")
     private long userId;
     
+    // 搜索分词文本，由NoteRepository在写入时生成；transient使其不进入备份JSON
+    @ColumnInfo(name = "search_text")
+    private transient String searchText;
+    
+    // 标题的全拼和首字母索引文本，由NoteRepository在写入时生成，用于拼音搜索
+    @ColumnInfo(name = "title_pinyin")
+    private transient String titlePinyin;
+    
+    @ColumnInfo(name = "title_initials")
+    private transient String titleInitials;
+    
+    // 标题、正文和图片的内容指纹，由NoteRepository在写入时生成，列表据此判断卡片内容是否变化
+    @ColumnInfo(name = "content_hash", defaultValue = "0")
+    private transient long contentHash;
+    
     // 构造函数
     public Note() {
         this.createdDate = new Date();
@@ -115,4 +132,36 @@ public class Note {
     public void setUserId(long userId) {
         this.userId = userId;
     }
+    
+    public String getSearchText() {
+        return searchText;
+    }
+    
+    public void setSearchText(String searchText) {
+        this.searchText = searchText;
+    }
+    
+    public String getTitlePinyin() {
+        return titlePinyin;
+    }
+    
+    public void setTitlePinyin(String titlePinyin) {
+        this.titlePinyin = titlePinyin;
+    }
+    
+    public String getTitleInitials() {
+        return titleInitials;
+    }
+    
+    public void setTitleInitials(String titleInitials) {
+        this.titleInitials = titleInitials;
+    }
+    
+    public long getContentHash() {
+        return contentHash;
+    }
+    
+    public void setContentHash(long contentHash) {
+        this.contentHash = contentHash;
+    }
 } 
\ No newline at end of file
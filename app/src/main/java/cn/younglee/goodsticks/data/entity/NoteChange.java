@@ -0,0 +1,61 @@
+package cn.younglee.goodsticks.data.entity;
+
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.Index;
+import androidx.room.PrimaryKey;
+
+/**
+ * 笔记变更日志实体类，每条笔记只保留最后一次变更
+ * 由notes表上的触发器维护（见AppDatabase），增量备份按changed_at水位读取
+ */
+@Entity(tableName = "note_changes", indices = {@Index(value = {"user_id", "changed_at"})})
+public class NoteChange {
+
+    @PrimaryKey
+    @ColumnInfo(name = "note_id")
+    private long noteId;
+
+    @ColumnInfo(name = "user_id")
+    private long userId;
+
+    // 变更时间，毫秒
+    @ColumnInfo(name = "changed_at")
+    private long changedAt;
+
+    @ColumnInfo(name = "deleted")
+    private boolean deleted;
+
+    // Getters and Setters
+    public long getNoteId() {
+        return noteId;
+    }
+
+    public void setNoteId(long noteId) {
+        this.noteId = noteId;
+    }
+
+    public long getUserId() {
+        return userId;
+    }
+
+    public void setUserId(long userId) {
+        this.userId = userId;
+    }
+
+    public long getChangedAt() {
+        return changedAt;
+    }
+
+    public void setChangedAt(long changedAt) {
+        this.changedAt = changedAt;
+    }
+
+    public boolean isDeleted() {
+        return deleted;
+    }
+
+    public void setDeleted(boolean deleted) {
+        this.deleted = deleted;
+    }
+}
@@ -0,0 +1,32 @@
+package cn.younglee.goodsticks.data.entity;
+
+import androidx.room.ColumnInfo;
+
+/**
+ * 笔记ID和完整正文，只为相关度最高的搜索结果加载，用于定位摘要
+ */
+public class NoteContent {
+
+    @ColumnInfo(name = "id")
+    private long id;
+
+    @ColumnInfo(name = "content")
+    private String content;
+
+    // Getters and Setters
+    public long getId() {
+        return id;
+    }
+
+    public void setId(long id) {
+        this.id = id;
+    }
+
+    public String getContent() {
+        return content;
+    }
+
+    public void setContent(String content) {
+        this.content = content;
+    }
+}
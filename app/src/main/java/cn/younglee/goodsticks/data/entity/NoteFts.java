@@ -0,0 +1,50 @@
+package cn.younglee.goodsticks.data.entity;
+
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.Fts4;
+
+/**
+ * 笔记全文索引实体类，以notes表作为外部内容表，由Room生成的触发器保持同步
+ * 索引search_text列和标题的拼音列，分词见SearchTokenizer。
+ * 查询词不限定列，输入拼音或首字母时可以直接命中拼音列
+ */
+@Fts4(contentEntity = Note.class)
+@Entity(tableName = "notes_fts")
+public class NoteFts {
+
+    @ColumnInfo(name = "search_text")
+    private String searchText;
+
+    @ColumnInfo(name = "title_pinyin")
+    private String titlePinyin;
+
+    @ColumnInfo(name = "title_initials")
+    private String titleInitials;
+
+    // Getters and Setters
+
+    public String getSearchText() {
+        return searchText;
+    }
+
+    public void setSearchText(String searchText) {
+        this.searchText = searchText;
+    }
+
+    public String getTitlePinyin() {
+        return titlePinyin;
+    }
+
+    public void setTitlePinyin(String titlePinyin) {
+        this.titlePinyin = titlePinyin;
+    }
+
+    public String getTitleInitials() {
+        return titleInitials;
+    }
+
+    public void setTitleInitials(String titleInitials) {
+        this.titleInitials = titleInitials;
+    }
+}
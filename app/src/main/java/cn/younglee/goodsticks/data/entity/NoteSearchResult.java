@@ -0,0 +1,112 @@
+package cn.younglee.goodsticks.data.entity;
+
+import androidx.room.ColumnInfo;
+import androidx.room.Ignore;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * 按相关度排序的搜索结果，在笔记摘要之外带有FTS匹配信息、正文摘要和高亮位置
+ * match_info和snippet由SQL查询返回，score和高亮位置由NoteRepository在后台线程计算
+ */
+public class NoteSearchResult extends NoteSummary {
+
+    // 摘要长度，以及命中位置之前保留的字符数
+    public static final int SNIPPET_LENGTH = 80;
+    public static final int SNIPPET_CONTEXT = 20;
+
+    // matchinfo(notes_fts, 'pcnalx')
+    @ColumnInfo(name = "match_info")
+    private byte[] matchInfo;
+
+    @ColumnInfo(name = "snippet")
+    private String snippet;
+
+    // 摘要在正文中的起始位置，从1开始
+    @ColumnInfo(name = "snippet_start")
+    private int snippetStart;
+
+    @Ignore
+    private double score;
+
+    // 高亮区间，每项为{起始, 结束}
+    @Ignore
+    private List<int[]> titleHighlights = Collections.emptyList();
+
+    @Ignore
+    private List<int[]> snippetHighlights = Collections.emptyList();
+
+    // Getters and Setters
+    public byte[] getMatchInfo() {
+        return matchInfo;
+    }
+
+    public void setMatchInfo(byte[] matchInfo) {
+        this.matchInfo = matchInfo;
+    }
+
+    public String getSnippet() {
+        return snippet;
+    }
+
+    public void setSnippet(String snippet) {
+        this.snippet = snippet;
+    }
+
+    public int getSnippetStart() {
+        return snippetStart;
+    }
+
+    public void setSnippetStart(int snippetStart) {
+        this.snippetStart = snippetStart;
+    }
+
+    public double getScore() {
+        return score;
+    }
+
+    public void setScore(double score) {
+        this.score = score;
+    }
+
+    public List<int[]> getTitleHighlights() {
+        return titleHighlights;
+    }
+
+    public void setTitleHighlights(List<int[]> titleHighlights) {
+        this.titleHighlights = titleHighlights;
+    }
+
+    public List<int[]> getSnippetHighlights() {
+        return snippetHighlights;
+    }
+
+    public void setSnippetHighlights(List<int[]> snippetHighlights) {
+        this.snippetHighlights = snippetHighlights;
+    }
+
+    /**
+     * 判断两条搜索结果的摘要和高亮是否相同
+     * 同一条笔记在不同搜索词下内容指纹不变，但摘要和高亮位置可能不同
+     */
+    public boolean hasSameSnippet(NoteSearchResult other) {
+        return Objects.equals(snippet, other.snippet)
+                && sameRanges(titleHighlights, other.titleHighlights)
+                && sameRanges(snippetHighlights, other.snippetHighlights);
+    }
+
+    private static boolean sameRanges(List<int[]> a, List<int[]> b) {
+        if (a.size() != b.size()) {
+            return false;
+        }
+        for (int i = 0; i < a.size(); i++) {
+            if (!Arrays.equals(a.get(i), b.get(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
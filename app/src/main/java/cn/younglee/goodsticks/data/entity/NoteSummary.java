@@ -0,0 +1,105 @@
+package cn.younglee.goodsticks.data.entity;
+
+import androidx.room.ColumnInfo;
+
+import java.util.Date;
+
+/**
+ * 笔记列表摘要，只包含首页卡片需要的列，正文截取前PREVIEW_LENGTH个字符
+ * 完整的笔记只在EditNoteActivity中按ID加载
+ */
+public class NoteSummary {
+
+    // 卡片最多显示3行，截取的长度足够填满预览
+    public static final int PREVIEW_LENGTH = 200;
+
+    @ColumnInfo(name = "id")
+    private long id;
+
+    @ColumnInfo(name = "title")
+    private String title;
+
+    @ColumnInfo(name = "content_preview")
+    private String contentPreview;
+
+    @ColumnInfo(name = "modified_date")
+    private Date modifiedDate;
+
+    @ColumnInfo(name = "image_path")
+    private String imagePath;
+
+    @ColumnInfo(name = "is_pinned")
+    private boolean isPinned;
+
+    @ColumnInfo(name = "color")
+    private int color;
+
+    // 标题、正文和图片的内容指纹，比较卡片内容时代替全文比较
+    @ColumnInfo(name = "content_hash")
+    private long contentHash;
+
+    // Getters and Setters
+    public long getId() {
+        return id;
+    }
+
+    public void setId(long id) {
+        this.id = id;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public void setTitle(String title) {
+        this.title = title;
+    }
+
+    public String getContentPreview() {
+        return contentPreview;
+    }
+
+    public void setContentPreview(String contentPreview) {
+        this.contentPreview = contentPreview;
+    }
+
+    public Date getModifiedDate() {
+        return modifiedDate;
+    }
+
+    public void setModifiedDate(Date modifiedDate) {
+        this.modifiedDate = modifiedDate;
+    }
+
+    public String getImagePath() {
+        return imagePath;
+    }
+
+    public void setImagePath(String imagePath) {
+        this.imagePath = imagePath;
+    }
+
+    public boolean isPinned() {
+        return isPinned;
+    }
+
+    public void setPinned(boolean pinned) {
+        isPinned = pinned;
+    }
+
+    public int getColor() {
+        return color;
+    }
+
+    public void setColor(int color) {
+        this.color = color;
+    }
+
+    public long getContentHash() {
+        return contentHash;
+    }
+
+    public void setContentHash(long contentHash) {
+        this.contentHash = contentHash;
+    }
+}
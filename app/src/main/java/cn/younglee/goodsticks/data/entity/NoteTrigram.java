@@ -0,0 +1,48 @@
+package cn.younglee.goodsticks.data.entity;
+
+import androidx.annotation.NonNull;
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.Index;
+
+/**
+ * 笔记三元组索引实体类，用于容错搜索
+ * 每条记录表示笔记中出现过的一个三字符片段，主键以gram开头，按片段和用户查找候选笔记时直接走索引。
+ * 由NoteRepository在写入笔记时维护，笔记删除时由触发器清理（见AppDatabase）。
+ * 实际的表由AppDatabase以WITHOUT ROWID建立，这里的声明供DAO查询和结构校验使用
+ */
+@Entity(tableName = "note_trigrams",
+        primaryKeys = {"gram", "user_id", "note_id"},
+        indices = {@Index(value = {"note_id"})})
+public class NoteTrigram {
+
+    @NonNull
+    @ColumnInfo(name = "gram")
+    private String gram;
+
+    @ColumnInfo(name = "user_id")
+    private long userId;
+
+    @ColumnInfo(name = "note_id")
+    private long noteId;
+
+    public NoteTrigram(@NonNull String gram, long userId, long noteId) {
+        this.gram = gram;
+        this.userId = userId;
+        this.noteId = noteId;
+    }
+
+    // Getters
+    @NonNull
+    public String getGram() {
+        return gram;
+    }
+
+    public long getUserId() {
+        return userId;
+    }
+
+    public long getNoteId() {
+        return noteId;
+    }
+}
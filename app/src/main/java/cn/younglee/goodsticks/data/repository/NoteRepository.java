@@ -3,84 +3,381 @@ package cn.younglee.goodsticks.data.repository;
 import android.app.Application;
 import android.content.SharedPreferences;
 
+import androidx.annotation.VisibleForTesting;
 import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MediatorLiveData;
+import androidx.lifecycle.MutableLiveData;
+import androidx.paging.Pager;
+import androidx.paging.PagingConfig;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import cn.younglee.goodsticks.GoodSticksApplication;
 import cn.younglee.goodsticks.data.dao.NoteDao;
 import cn.younglee.goodsticks.data.database.AppDatabase;
 import cn.younglee.goodsticks.data.entity.Note;
+import cn.younglee.goodsticks.data.entity.NoteContent;
+import cn.younglee.goodsticks.data.entity.NoteSearchResult;
+import cn.younglee.goodsticks.data.entity.NoteSummary;
+import cn.younglee.goodsticks.data.entity.NoteTrigram;
+import cn.younglee.goodsticks.utils.AppExecutors;
+import cn.younglee.goodsticks.utils.ContentHash;
+import cn.younglee.goodsticks.utils.SearchRanker;
+import cn.younglee.goodsticks.utils.SearchTokenizer;
 
 public class NoteRepository {
+    private static final int PAGE_SIZE = 30;
+    private static final int DELETE_CHUNK_SIZE = 500;
+    
+    // 相关度搜索最多返回的结果数
+    private static final int RANKED_LIMIT = 100;
+    
+    // 容错搜索：候选笔记至少包含搜索词中该比例的片段，只对前FUZZY_CANDIDATE_LIMIT条候选计算编辑距离
+    private static final double FUZZY_MIN_OVERLAP = 0.3;
+    private static final int FUZZY_CANDIDATE_LIMIT = 50;
+    private static final double FUZZY_MIN_SIMILARITY = 0.6;
+    // 搜索词最多使用的片段数，避免超出SQLite的参数个数限制
+    private static final int FUZZY_MAX_QUERY_GRAMS = 64;
+    
+    // 相关度从高到低，相同时置顶优先、最近修改优先
+    private static final Comparator<NoteSearchResult> RANK_ORDER = (a, b) -> {
+        int byScore = Double.compare(b.getScore(), a.getScore());
+        if (byScore != 0) {
+            return byScore;
+        }
+        if (a.isPinned() != b.isPinned()) {
+            return a.isPinned() ? -1 : 1;
+        }
+        long aTime = a.getModifiedDate() != null ? a.getModifiedDate().getTime() : 0;
+        long bTime = b.getModifiedDate() != null ? b.getModifiedDate().getTime() : 0;
+        return Long.compare(bTime, aTime);
+    };
+    
+    private final AppDatabase db;
     private final NoteDao noteDao;
-    private final LiveData<List<Note>> allNotes;
     private final long currentUserId;
-    private LiveData<List<Note>> userNotes;
+    
+    /**
+     * 笔记批次来源，用于流式恢复
+     * nextBatch在写入线程的事务中调用，只能读取本地数据，不能等待网络，否则整个下载期间都会占用数据库写锁
+     */
+    public interface NoteBatchSource {
+        /**
+         * @return 下一批笔记，没有更多时返回空列表
+         */
+        List<Note> nextBatch() throws IOException;
+    }
     
     public NoteRepository(Application application) {
-        AppDatabase db = AppDatabase.getDatabase(application);
+        db = AppDatabase.getDatabase(application);
         noteDao = db.noteDao();
         
         // 从SharedPreferences获取当前用户ID
         SharedPreferences prefs = GoodSticksApplication.getInstance().getSecureSharedPreferences();
         currentUserId = prefs.getLong("user_id", -1);
+    }
+    
+    /**
+     * 使用指定的数据库和用户，用于测试
+     */
+    @VisibleForTesting
+    public NoteRepository(AppDatabase db, long currentUserId) {
+        this.db = db;
+        this.noteDao = db.noteDao();
+        this.currentUserId = currentUserId;
+    }
+    
+    /**
+     * 创建笔记列表的分页器，每次失效时重新创建PagingSource
+     * @return 笔记摘要分页器
+     */
+    public Pager<Integer, NoteSummary> getNotesPager() {
+        // 瀑布流中各项高度不同，不使用占位符以免滚动时布局跳动
+        PagingConfig config = new PagingConfig(PAGE_SIZE, PAGE_SIZE, false);
+        return new Pager<>(config, () -> {
+            if (currentUserId != -1) {
+                return noteDao.getNoteSummariesByUserIdPaged(currentUserId); // 返回当前用户的笔记
+            } else {
+                return noteDao.getAllNoteSummariesPaged(); // 如果没有用户ID，返回所有笔记（这种情况不应该发生）
+            }
+        });
+    }
+    
+    public LiveData<Note> getNoteById(long id) {
+        return noteDao.getNoteById(id);
+    }
+    
+    public LiveData<List<NoteSummary>> searchNotes(String searchQuery) {
+        String matchQuery = SearchTokenizer.buildMatchQuery(searchQuery);
+        if (matchQuery.isEmpty()) {
+            return new MutableLiveData<>(Collections.emptyList());
+        }
         
         if (currentUserId != -1) {
-            userNotes = noteDao.getNotesByUserId(currentUserId);
-            allNotes = userNotes; // 返回当前用户的笔记
+            return noteDao.searchNotesByUserId(currentUserId, matchQuery);
         } else {
-            allNotes = noteDao.getAllNotes(); // 如果没有用户ID，返回所有笔记（这种情况不应该发生）
+            return noteDao.searchNotes(matchQuery);
         }
     }
     
-    public LiveData<List<Note>> getAllNotes() {
-        return allNotes;
+    /**
+     * 按BM25相关度排序的搜索，结果带有命中位置附近的正文摘要和高亮区间
+     * 查询由Room在读取线程执行，打分、排序和高亮在读取线程池中完成，主线程只负责显示。
+     * 全文索引没有命中时（例如输入有错别字），改用三元组索引做容错搜索
+     * @param searchQuery 用户输入的搜索词
+     * @return 最多RANKED_LIMIT条结果，笔记变化时自动更新
+     */
+    public LiveData<List<NoteSearchResult>> searchRanked(String searchQuery) {
+        String matchQuery = SearchTokenizer.buildMatchQuery(searchQuery);
+        if (matchQuery.isEmpty()) {
+            return new MutableLiveData<>(Collections.emptyList());
+        }
+        
+        List<String> terms = SearchTokenizer.extractTerms(searchQuery);
+        
+        LiveData<List<NoteSearchResult>> matches;
+        if (currentUserId != -1) {
+            matches = noteDao.searchRankedByUserId(currentUserId, matchQuery);
+        } else {
+            matches = noteDao.searchRanked(matchQuery);
+        }
+        
+        MediatorLiveData<List<NoteSearchResult>> ranked = new MediatorLiveData<>();
+        AtomicInteger generation = new AtomicInteger();
+        ranked.addSource(matches, results -> {
+            int current = generation.incrementAndGet();
+            AppExecutors.reader().execute(() -> {
+                List<NoteSearchResult> top = results.isEmpty()
+                        ? fuzzySearch(searchQuery, terms)
+                        : rank(results, terms);
+                // 排序期间笔记再次变化时，只发布最新一次查询的结果
+                if (generation.get() == current) {
+                    ranked.postValue(top);
+                }
+            });
+        });
+        return ranked;
     }
     
-    public LiveData<Note> getNoteById(long id) {
-        return noteDao.getNoteById(id);
+    /**
+     * 计算BM25分数并保留前RANKED_LIMIT条，再为保留的结果生成摘要和高亮区间
+     */
+    private List<NoteSearchResult> rank(List<NoteSearchResult> results, List<String> terms) {
+        // 小顶堆，堆顶为当前最不相关的结果
+        PriorityQueue<NoteSearchResult> top = new PriorityQueue<>(RANKED_LIMIT + 1, RANK_ORDER.reversed());
+        for (NoteSearchResult result : results) {
+            result.setScore(SearchRanker.bm25(result.getMatchInfo()));
+            top.add(result);
+            if (top.size() > RANKED_LIMIT) {
+                top.poll();
+            }
+        }
+        
+        List<NoteSearchResult> sorted = new ArrayList<>(top);
+        sorted.sort(RANK_ORDER);
+        
+        // 以最长的搜索词定位摘要
+        String anchor = "";
+        for (String term : terms) {
+            if (term.length() > anchor.length()) {
+                anchor = term;
+            }
+        }
+        locateSnippets(sorted, anchor);
+        for (NoteSearchResult result : sorted) {
+            formatSnippet(result, terms);
+        }
+        return sorted;
     }
     
-    public LiveData<List<Note>> searchNotes(String searchQuery) {
+    /**
+     * 为保留的结果截取正文中第一次出现anchor附近的摘要
+     * 在Java中忽略大小写查找，SQLite的lower()只转换ASCII字母，无法匹配带变音符号的拉丁字母、西里尔字母等
+     */
+    private void locateSnippets(List<NoteSearchResult> results, String anchor) {
+        if (results.isEmpty()) {
+            return;
+        }
+        List<Long> ids = new ArrayList<>(results.size());
+        for (NoteSearchResult result : results) {
+            ids.add(result.getId());
+        }
+        Map<Long, String> contents = new HashMap<>();
+        for (NoteContent content : noteDao.getContentsByIds(ids)) {
+            contents.put(content.getId(), content.getContent());
+        }
+        
+        for (NoteSearchResult result : results) {
+            String content = contents.get(result.getId());
+            if (content == null || content.isEmpty()) {
+                continue;
+            }
+            int start = Math.max(0, SearchRanker.indexOfIgnoreCase(content, anchor)
+                    - NoteSearchResult.SNIPPET_CONTEXT);
+            int end = Math.min(content.length(), start + NoteSearchResult.SNIPPET_LENGTH);
+            // 不从代理对中间截断
+            if (start > 0 && Character.isLowSurrogate(content.charAt(start))) {
+                start--;
+            }
+            if (end < content.length() && Character.isLowSurrogate(content.charAt(end))) {
+                end++;
+            }
+            result.setSnippet(content.substring(start, end));
+            result.setSnippetStart(start + 1);
+        }
+    }
+    
+    /**
+     * 容错搜索，在读取线程中调用
+     * 先由三元组索引取出共有片段最多的候选笔记，再只对这些候选的标题和正文开头计算编辑距离相似度
+     */
+    private List<NoteSearchResult> fuzzySearch(String searchQuery, List<String> terms) {
+        Set<String> grams = SearchTokenizer.buildQueryTrigrams(searchQuery);
+        if (grams.isEmpty()) {
+            return Collections.emptyList();
+        }
+        
+        List<String> queryGrams = new ArrayList<>(grams);
+        if (queryGrams.size() > FUZZY_MAX_QUERY_GRAMS) {
+            queryGrams = queryGrams.subList(0, FUZZY_MAX_QUERY_GRAMS);
+        }
+        int minShared = Math.max(1, (int) Math.ceil(queryGrams.size() * FUZZY_MIN_OVERLAP));
+        List<Long> candidateIds;
         if (currentUserId != -1) {
-            return noteDao.searchNotesByUserId(currentUserId, searchQuery);
+            candidateIds = noteDao.getTrigramCandidatesByUserId(
+                    currentUserId, queryGrams, minShared, FUZZY_CANDIDATE_LIMIT);
         } else {
-            return noteDao.searchNotes(searchQuery);
+            candidateIds = noteDao.getTrigramCandidates(queryGrams, minShared, FUZZY_CANDIDATE_LIMIT);
+        }
+        if (candidateIds.isEmpty()) {
+            return Collections.emptyList();
+        }
+        
+        String pattern = SearchTokenizer.normalizeForFuzzy(searchQuery);
+        List<NoteSearchResult> matched = new ArrayList<>();
+        for (NoteSearchResult candidate : noteDao.getSearchResultsByIds(candidateIds)) {
+            double similarity = Math.max(
+                    SearchRanker.similarity(pattern, SearchTokenizer.normalizeForFuzzy(candidate.getTitle())),
+                    SearchRanker.similarity(pattern, SearchTokenizer.normalizeForFuzzy(candidate.getSnippet())));
+            if (similarity >= FUZZY_MIN_SIMILARITY) {
+                candidate.setScore(similarity);
+                formatSnippet(candidate, terms);
+                matched.add(candidate);
+            }
         }
+        matched.sort(RANK_ORDER);
+        return matched;
+    }
+    
+    /**
+     * 整理摘要的显示文本并计算标题和摘要的高亮区间
+     */
+    private static void formatSnippet(NoteSearchResult result, List<String> terms) {
+        String snippet = result.getSnippet();
+        if (snippet != null && !snippet.isEmpty()) {
+            snippet = snippet.replace('\n', ' ');
+            if (result.getSnippetStart() > 1) {
+                snippet = "…" + snippet;
+            }
+            result.setSnippet(snippet);
+        }
+        result.setTitleHighlights(SearchRanker.findHighlights(result.getTitle(), terms));
+        result.setSnippetHighlights(SearchRanker.findHighlights(snippet, terms));
     }
     
     public void insert(Note note) {
         if (currentUserId != -1) {
             note.setUserId(currentUserId);
         }
-        AppDatabase.databaseWriteExecutor.execute(() -> {
-            noteDao.insert(note);
+        AppExecutors.writer().execute(() -> {
+            prepareForWrite(note);
+            db.runInTransaction(() -> {
+                long id = noteDao.insert(note);
+                indexTrigrams(id, note);
+            });
         });
     }
     
     public void update(Note note) {
-        AppDatabase.databaseWriteExecutor.execute(() -> {
-            noteDao.update(note);
+        AppExecutors.writer().execute(() -> {
+            prepareForWrite(note);
+            db.runInTransaction(() -> {
+                noteDao.update(note);
+                indexTrigrams(note.getId(), note);
+            });
         });
     }
     
+    /**
+     * 写入前生成搜索分词等派生字段，在后台线程调用
+     * @param note 笔记对象
+     */
+    private void prepareForWrite(Note note) {
+        note.setSearchText(SearchTokenizer.buildIndexText(note.getTitle(), note.getContent()));
+        note.setTitlePinyin(SearchTokenizer.buildPinyinText(note.getTitle()));
+        note.setTitleInitials(SearchTokenizer.buildInitialsText(note.getTitle()));
+        note.setContentHash(ContentHash.of(note.getTitle(), note.getContent(), note.getImagePath()));
+    }
+    
+    /**
+     * 更新一条笔记的三元组索引，在写入线程的事务中调用
+     * 与已有片段比较，只删除不再出现的片段、插入新增的片段，编辑少量文字时只改动少量索引行
+     * @param noteId 笔记ID
+     * @param note 笔记对象
+     */
+    private void indexTrigrams(long noteId, Note note) {
+        Set<String> grams = SearchTokenizer.buildTrigrams(note.getTitle(), note.getContent());
+        List<NoteTrigram> removed = new ArrayList<>();
+        for (NoteTrigram existing : noteDao.getTrigramsByNoteId(noteId)) {
+            if (!grams.remove(existing.getGram())) {
+                removed.add(existing);
+            }
+        }
+        noteDao.deleteTrigrams(removed);
+        
+        List<NoteTrigram> added = new ArrayList<>();
+        for (String gram : grams) {
+            added.add(new NoteTrigram(gram, note.getUserId(), noteId));
+        }
+        noteDao.insertTrigrams(added);
+    }
+    
+    /**
+     * 为批量插入的笔记建立三元组索引
+     * @param noteIds insertAll返回的笔记ID，与notes一一对应
+     * @param notes 笔记列表
+     */
+    private void indexTrigrams(List<Long> noteIds, List<Note> notes) {
+        for (int i = 0; i < notes.size(); i++) {
+            indexTrigrams(noteIds.get(i), notes.get(i));
+        }
+    }
+    
     public void delete(Note note) {
-        AppDatabase.databaseWriteExecutor.execute(() -> {
+        AppExecutors.writer().execute(() -> {
             noteDao.delete(note);
         });
     }
     
     public void deleteById(long id) {
-        AppDatabase.databaseWriteExecutor.execute(() -> {
+        AppExecutors.writer().execute(() -> {
             noteDao.deleteById(id);
         });
     }
     
     public void updatePinStatus(long id, boolean isPinned) {
-        AppDatabase.databaseWriteExecutor.execute(() -> {
+        AppExecutors.writer().execute(() -> {
             noteDao.updatePinStatus(id, isPinned);
         });
     }
@@ -92,13 +389,102 @@ public class NoteRepository {
      */
     public List<Note> getNotesByUserIdSync(long userId) {
         try {
-            return Executors.newSingleThreadExecutor().submit(() -> 
+            return AppExecutors.reader().submit(() ->
                 noteDao.getNotesByUserIdSync(userId)).get();
         } catch (ExecutionException | InterruptedException e) {
             return null;
         }
     }
     
+    /**
+     * 同步分批获取用户笔记，按ID升序返回ID大于afterId的最多limit条
+     * @param userId 用户ID
+     * @param afterId 上一批最后一条笔记的ID
+     * @param limit 每批数量
+     * @return 笔记列表，出错时返回null
+     */
+    public List<Note> getNotesByUserIdAfterSync(long userId, long afterId, int limit) {
+        try {
+            return AppExecutors.reader().submit(() ->
+                noteDao.getNotesByUserIdAfter(userId, afterId, limit)).get();
+        } catch (ExecutionException | InterruptedException e) {
+            return null;
+        }
+    }
+    
+    /**
+     * 同步获取用户最近一次笔记变更的时间，作为增量备份的水位
+     * @param userId 用户ID
+     * @return 变更时间毫秒数，没有变更时返回0，出错时返回-1
+     */
+    public long getLatestChangeTimeSync(long userId) {
+        try {
+            Long latest = AppExecutors.reader().submit(() ->
+                noteDao.getLatestChangeTime(userId)).get();
+            return latest != null ? latest : 0;
+        } catch (ExecutionException | InterruptedException e) {
+            return -1;
+        }
+    }
+    
+    /**
+     * 同步分批获取水位之后新增或修改的笔记，按ID升序返回ID大于afterId的最多limit条
+     * @param userId 用户ID
+     * @param since 水位，变更时间毫秒数
+     * @param afterId 上一批最后一条笔记的ID
+     * @param limit 每批数量
+     * @return 笔记列表，出错时返回null
+     */
+    public List<Note> getChangedNotesByUserIdAfterSync(long userId, long since, long afterId, int limit) {
+        try {
+            return AppExecutors.reader().submit(() ->
+                noteDao.getChangedNotesByUserIdAfter(userId, since, afterId, limit)).get();
+        } catch (ExecutionException | InterruptedException e) {
+            return null;
+        }
+    }
+    
+    /**
+     * 同步获取水位之后删除的笔记ID
+     * @param userId 用户ID
+     * @param since 水位，变更时间毫秒数
+     * @return 笔记ID列表，出错时返回null
+     */
+    public List<Long> getDeletedNoteIdsSinceSync(long userId, long since) {
+        try {
+            return AppExecutors.reader().submit(() ->
+                noteDao.getDeletedNoteIdsSince(userId, since)).get();
+        } catch (ExecutionException | InterruptedException e) {
+            return null;
+        }
+    }
+    
+    // 同步方法获取所有笔记引用的图片路径，用于清理图片，出错时返回null
+    public Set<String> getReferencedImagePathsSync() {
+        try {
+            return AppExecutors.reader().submit(() ->
+                new HashSet<>(noteDao.getReferencedImagePaths())).get();
+        } catch (ExecutionException | InterruptedException e) {
+            return null;
+        }
+    }
+    
+    /**
+     * 同步清理水位之前已经备份的变更日志
+     * @param userId 用户ID
+     * @param watermark 水位，变更时间毫秒数
+     */
+    public void pruneChangesSync(long userId, long watermark) {
+        try {
+            AppExecutors.writer().submit(() -> {
+                noteDao.pruneChanges(userId, watermark);
+                return null;
+            }).get();
+        } catch (ExecutionException | InterruptedException e) {
+            // 日志保留到下次备份再清理
+        }
+    }
+    
     /**
      * 同步方式插入笔记
      * @param note 笔记对象
@@ -106,20 +492,122 @@ public class NoteRepository {
      */
     public long insertNoteSync(Note note) {
         try {
-            return Executors.newSingleThreadExecutor().submit(() -> 
-                noteDao.insert(note)).get();
+            return AppExecutors.writer().submit(() -> {
+                prepareForWrite(note);
+                return db.runInTransaction(() -> {
+                    long id = noteDao.insert(note);
+                    indexTrigrams(id, note);
+                    return id;
+                });
+            }).get();
         } catch (ExecutionException | InterruptedException e) {
             return 0;
         }
     }
     
+    /**
+     * 同步方式用分批读取的笔记替换用户的全部笔记，删除与所有批次的插入在同一个事务中完成，
+     * 读取或写入出错时回滚，保留原有笔记。ID已被其他用户的笔记占用的笔记会被跳过
+     * @param userId 用户ID
+     * @param source 笔记批次来源
+     * @return 被跳过的笔记ID，出错时返回null
+     */
+    public List<Long> replaceAllNotesByUserIdSync(long userId, NoteBatchSource source) {
+        try {
+            return AppExecutors.writer().submit(() -> {
+                List<Long> skippedIds = new ArrayList<>();
+                List<Note> batch = source.nextBatch();
+                if (batch.isEmpty()) {
+                    // 没有笔记时保留现有笔记
+                    return skippedIds;
+                }
+                
+                return db.runInTransaction(() -> {
+                    noteDao.deleteAllNotesByUserId(userId);
+                    List<Note> current = batch;
+                    while (!current.isEmpty()) {
+                        insertRestoredNotes(userId, current, skippedIds);
+                        current = source.nextBatch();
+                    }
+                    return skippedIds;
+                });
+            }).get();
+        } catch (ExecutionException | InterruptedException e) {
+            return null;
+        }
+    }
+    
+    /**
+     * 同步方式应用一个增量备份：删除指定笔记，并用分批读取的笔记覆盖同ID的笔记，
+     * 全部操作在同一个事务中完成，出错时回滚。只会删除或覆盖属于该用户的笔记，
+     * ID已被其他用户的笔记占用的笔记会被跳过
+     * @param userId 用户ID
+     * @param deletedIds 需要删除的笔记ID
+     * @param source 新增或修改的笔记批次来源
+     * @return 被跳过的笔记ID，出错时返回null
+     */
+    public List<Long> applyNoteChangesSync(long userId, List<Long> deletedIds, NoteBatchSource source) {
+        try {
+            return AppExecutors.writer().submit(() -> db.runInTransaction(() -> {
+                // 分段删除，避免超出SQLite的参数个数限制
+                for (int i = 0; i < deletedIds.size(); i += DELETE_CHUNK_SIZE) {
+                    noteDao.deleteByIdsForUser(userId,
+                            deletedIds.subList(i, Math.min(i + DELETE_CHUNK_SIZE, deletedIds.size())));
+                }
+                
+                List<Long> skippedIds = new ArrayList<>();
+                List<Note> batch = source.nextBatch();
+                while (!batch.isEmpty()) {
+                    List<Long> ids = new ArrayList<>(batch.size());
+                    for (Note note : batch) {
+                        ids.add(note.getId());
+                    }
+                    // 先删除自己的旧版本再插入
+                    noteDao.deleteByIdsForUser(userId, ids);
+                    insertRestoredNotes(userId, batch, skippedIds);
+                    batch = source.nextBatch();
+                }
+                return skippedIds;
+            })).get();
+        } catch (ExecutionException | InterruptedException e) {
+            return null;
+        }
+    }
+    
+    /**
+     * 插入一批恢复的笔记，在写入线程的事务中调用
+     * 与旧版本逐条插入时一样，ID已被其他用户的笔记占用的笔记不会覆盖对方的笔记，而是跳过
+     * @param skippedIds 收集被跳过的笔记ID
+     */
+    private void insertRestoredNotes(long userId, List<Note> batch, List<Long> skippedIds) {
+        List<Long> ids = new ArrayList<>(batch.size());
+        for (Note note : batch) {
+            ids.add(note.getId());
+        }
+        Set<Long> foreignIds = new HashSet<>(noteDao.getIdsOwnedByOthers(userId, ids));
+        
+        List<Note> notes = new ArrayList<>(batch.size());
+        for (Note note : batch) {
+            if (foreignIds.contains(note.getId())) {
+                skippedIds.add(note.getId());
+                continue;
+            }
+            note.setUserId(userId);
+            prepareForWrite(note);
+            notes.add(note);
+        }
+        if (!notes.isEmpty()) {
+            indexTrigrams(noteDao.insertAll(notes), notes);
+        }
+    }
+    
     /**
      * 同步方式删除用户所有笔记
      * @param userId 用户ID
      */
     public void deleteAllNotesByUserIdSync(long userId) {
         try {
-            Executors.newSingleThreadExecutor().submit(() -> {
+            AppExecutors.writer().submit(() -> {
                 noteDao.deleteAllNotesByUserId(userId);
                 return null;
             }).get();
@@ -6,22 +6,19 @@ import androidx.lifecycle.LiveData;
 
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.Executor;
-import java.util.concurrent.Executors;
 
 import cn.younglee.goodsticks.data.dao.UserDao;
 import cn.younglee.goodsticks.data.database.AppDatabase;
 import cn.younglee.goodsticks.data.entity.User;
+import cn.younglee.goodsticks.utils.AppExecutors;
 
 public class UserRepository {
     
     private final UserDao userDao;
-    private final Executor executor;
     
     public UserRepository(Application application) {
         AppDatabase db = AppDatabase.getDatabase(application);
         userDao = db.userDao();
-        executor = Executors.newSingleThreadExecutor();
     }
     
     /**
@@ -40,7 +37,7 @@ public class UserRepository {
             // 创建新用户并插入数据库
             User newUser = new User(username, password);
             return userDao.insert(newUser);
-        }, executor);
+        }, AppExecutors.writer());
     }
     
     /**
@@ -51,7 +48,7 @@ public class UserRepository {
      */
     public CompletableFuture<User> login(String username, String password) {
         return CompletableFuture.supplyAsync(() -> 
-            userDao.getUserByUsernameAndPassword(username, password), executor);
+            userDao.getUserByUsernameAndPassword(username, password), AppExecutors.reader());
     }
     
     /**
@@ -62,7 +59,7 @@ public class UserRepository {
     public boolean isUsernameExists(String username) {
         try {
             return CompletableFuture.supplyAsync(() -> 
-                userDao.isUsernameExist(username) > 0, executor).get();
+                userDao.isUsernameExist(username) > 0, AppExecutors.reader()).get();
         } catch (ExecutionException | InterruptedException e) {
             return false;
         }
@@ -85,7 +82,7 @@ public class UserRepository {
     public User getUserByIdSync(long userId) {
         try {
             return CompletableFuture.supplyAsync(() -> 
-                userDao.getUserByIdSync(userId), executor).get();
+                userDao.getUserByIdSync(userId), AppExecutors.reader()).get();
         } catch (ExecutionException | InterruptedException e) {
             return null;
         }
@@ -99,7 +96,7 @@ public class UserRepository {
     public long getUserIdByUsernameSync(String username) {
         try {
             return CompletableFuture.supplyAsync(() -> 
-                userDao.getUserIdByUsername(username), executor).get();
+                userDao.getUserIdByUsername(username), AppExecutors.reader()).get();
         } catch (ExecutionException | InterruptedException e) {
             return 0;
         }
@@ -113,7 +110,7 @@ public class UserRepository {
     public long insertUserSync(User user) {
         try {
             return CompletableFuture.supplyAsync(() -> 
-                userDao.insert(user), executor).get();
+                userDao.insert(user), AppExecutors.writer()).get();
         } catch (ExecutionException | InterruptedException e) {
             return 0;
         }
@@ -126,7 +123,7 @@ public class UserRepository {
     public void updateUserSync(User user) {
         try {
             CompletableFuture.runAsync(() -> 
-                userDao.update(user), executor).get();
+                userDao.update(user), AppExecutors.writer()).get();
         } catch (ExecutionException | InterruptedException e) {
             // 处理异常
         }
@@ -137,6 +134,6 @@ public class UserRepository {
      * @param user 用户对象
      */
     public void updateUser(User user) {
-        AppDatabase.databaseWriteExecutor.execute(() -> userDao.update(user));
+        AppExecutors.writer().execute(() -> userDao.update(user));
     }
 } 
\ No newline at end of file
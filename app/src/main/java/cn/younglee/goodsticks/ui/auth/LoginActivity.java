@@ -19,6 +19,7 @@ import cn.younglee.goodsticks.R;
 import cn.younglee.goodsticks.data.entity.User;
 import cn.younglee.goodsticks.data.repository.UserRepository;
 import cn.younglee.goodsticks.databinding.ActivityLoginBinding;
+import cn.younglee.goodsticks.utils.AppStartup;
 import cn.younglee.goodsticks.utils.DataMigrationUtil;
 import cn.younglee.goodsticks.utils.ThemeUtils;
 
@@ -46,6 +47,7 @@ public class LoginActivity extends AppCompatActivity {
         super.onCreate(savedInstanceState);
         binding = ActivityLoginBinding.inflate(getLayoutInflater());
         setContentView(binding.getRoot());
+        AppStartup.reportInteractive(this);
         
         prefs = GoodSticksApplication.getInstance().getSecureSharedPreferences();
         userRepository = new UserRepository(getApplication());
@@ -13,20 +13,33 @@ import androidx.annotation.Nullable;
 import androidx.appcompat.app.AlertDialog;
 import androidx.fragment.app.Fragment;
 import androidx.lifecycle.ViewModelProvider;
+import androidx.paging.LoadState;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.StaggeredGridLayoutManager;
 
+import com.bumptech.glide.Glide;
+
+import kotlin.Unit;
+
 import cn.younglee.goodsticks.R;
 import cn.younglee.goodsticks.databinding.FragmentHomeBinding;
 import cn.younglee.goodsticks.ui.note.EditNoteActivity;
 import cn.younglee.goodsticks.ui.note.NoteAdapter;
+import cn.younglee.goodsticks.ui.note.NoteThumbnails;
 import cn.younglee.goodsticks.ui.note.NoteViewModel;
+import cn.younglee.goodsticks.utils.AppStartup;
 
 public class HomeFragment extends Fragment {
     
+    private static final int SPAN_COUNT = 2;
+    // 滚动时向前预加载缩略图的条目数
+    private static final int PRELOAD_AHEAD = 10;
+    
     private FragmentHomeBinding binding;
     private NoteViewModel noteViewModel;
     private NoteAdapter adapter;
+    // 列表是否已开始首次加载
+    private boolean refreshStarted;
     
     @Override
     public View onCreateView(@NonNull LayoutInflater inflater, ViewGroup container,
@@ -49,9 +62,10 @@ public class HomeFragment extends Fragment {
     
     private void setupRecyclerView() {
         // 使用瀑布流布局，类似iOS的卡片式设计
-        StaggeredGridLayoutManager layoutManager = new StaggeredGridLayoutManager(2, LinearLayoutManager.VERTICAL);
+        StaggeredGridLayoutManager layoutManager = new StaggeredGridLayoutManager(SPAN_COUNT, LinearLayoutManager.VERTICAL);
         binding.recyclerView.setLayoutManager(layoutManager);
         
+        NoteThumbnails thumbnails = new NoteThumbnails(Glide.with(this), requireContext(), SPAN_COUNT);
         adapter = new NoteAdapter(new NoteAdapter.NoteClickListener() {
             @Override
             public void onNoteClick(long noteId) {
@@ -66,9 +80,26 @@ public class HomeFragment extends Fragment {
                 // 长按显示选项菜单
                 showNoteOptionsDialog(noteId);
             }
-        });
+        }, thumbnails);
         
         binding.recyclerView.setAdapter(adapter);
+        // 在条目出现之前解码即将显示的缩略图
+        binding.recyclerView.addOnScrollListener(thumbnails.createPreloader(adapter, PRELOAD_AHEAD));
+        
+        // 根据分页加载状态显示空视图
+        adapter.addLoadStateListener(loadStates -> {
+            LoadState refresh = loadStates.getRefresh();
+            if (binding != null && refresh instanceof LoadState.NotLoading) {
+                updateEmptyView(adapter.getItemCount() == 0);
+            }
+            // 首次加载结束、列表内容即将绘制时记录启动的可交互耗时
+            if (refresh instanceof LoadState.Loading) {
+                refreshStarted = true;
+            } else if ((refreshStarted || adapter.getItemCount() > 0) && getActivity() != null) {
+                AppStartup.reportInteractive(getActivity());
+            }
+            return Unit.INSTANCE;
+        });
     }
     
     private void setupFab() {
@@ -89,24 +120,15 @@ public class HomeFragment extends Fragment {
             
             @Override
             public void afterTextChanged(Editable s) {
-                String query = s.toString().trim();
-                if (query.isEmpty()) {
-                    observeNotes();
-                } else {
-                    noteViewModel.searchNotes(query).observe(getViewLifecycleOwner(), notes -> {
-                        adapter.submitList(notes);
-                        updateEmptyView(notes == null || notes.isEmpty());
-                    });
-                }
+                // 由ViewModel防抖并切换查询，列表始终只观察getNotes()
+                noteViewModel.setSearchQuery(s.toString());
             }
         });
     }
     
     private void observeNotes() {
-        noteViewModel.getAllNotes().observe(getViewLifecycleOwner(), notes -> {
-            adapter.submitList(notes);
-            updateEmptyView(notes == null || notes.isEmpty());
-        });
+        noteViewModel.getNotes().observe(getViewLifecycleOwner(), pagingData ->
+                adapter.submitData(getViewLifecycleOwner().getLifecycle(), pagingData));
     }
     
     private void updateEmptyView(boolean isEmpty) {
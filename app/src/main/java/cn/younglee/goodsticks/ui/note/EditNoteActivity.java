@@ -40,11 +40,17 @@ import cn.younglee.goodsticks.utils.ThemeUtils;
 public class EditNoteActivity extends AppCompatActivity {
     
     public static final String EXTRA_NOTE_ID = "note_id";
+    private static final String STATE_PHOTO_PATH = "photo_path";
+    private static final String STATE_IMAGE_EDITED = "image_edited";
     
     private ActivityEditNoteBinding binding;
     private NoteViewModel noteViewModel;
     private Note currentNote;
     private String currentPhotoPath;
+    // 图片是否已被添加或移除，此时不再使用笔记中保存的图片
+    private boolean imageEdited;
+    // 相机拍摄的原图，导入后删除
+    private File pendingCameraFile;
     
     private static final int REQUEST_CAMERA_PERMISSION = 100;
     private static final int REQUEST_STORAGE_PERMISSION = 101;
@@ -67,9 +73,25 @@ public class EditNoteActivity extends AppCompatActivity {
         
         noteViewModel = new ViewModelProvider(this).get(NoteViewModel.class);
         
+        if (savedInstanceState != null) {
+            imageEdited = savedInstanceState.getBoolean(STATE_IMAGE_EDITED);
+            if (imageEdited) {
+                currentPhotoPath = savedInstanceState.getString(STATE_PHOTO_PATH);
+                showCurrentImage();
+            }
+        }
+        
         initActivityResultLaunchers();
         loadNote();
         setupViews();
+        observeIngestResult();
+    }
+    
+    @Override
+    protected void onSaveInstanceState(@NonNull Bundle outState) {
+        super.onSaveInstanceState(outState);
+        outState.putBoolean(STATE_IMAGE_EDITED, imageEdited);
+        outState.putString(STATE_PHOTO_PATH, currentPhotoPath);
     }
     
     private void initActivityResultLaunchers() {
@@ -77,8 +99,15 @@ public class EditNoteActivity extends AppCompatActivity {
         takePictureLauncher = registerForActivityResult(
                 new ActivityResultContracts.TakePicture(),
                 success -> {
+                    File cameraFile = pendingCameraFile;
+                    pendingCameraFile = null;
+                    if (cameraFile == null) {
+                        return;
+                    }
                     if (success) {
-                        displayImage(currentPhotoPath);
+                        noteViewModel.ingestImage(Uri.fromFile(cameraFile), cameraFile);
+                    } else {
+                        cameraFile.delete();
                     }
                 });
         
@@ -87,8 +116,7 @@ public class EditNoteActivity extends AppCompatActivity {
                 new ActivityResultContracts.GetContent(),
                 uri -> {
                     if (uri != null) {
-                        currentPhotoPath = uri.toString();
-                        displayImage(currentPhotoPath);
+                        noteViewModel.ingestImage(uri, null);
                     }
                 });
     }
@@ -112,9 +140,9 @@ public class EditNoteActivity extends AppCompatActivity {
         binding.etTitle.setText(currentNote.getTitle());
         binding.etContent.setText(currentNote.getContent());
         
-        if (currentNote.getImagePath() != null && !currentNote.getImagePath().isEmpty()) {
+        if (!imageEdited) {
             currentPhotoPath = currentNote.getImagePath();
-            displayImage(currentPhotoPath);
+            showCurrentImage();
         }
         
         setTitle(R.string.edit_note);
@@ -197,14 +225,38 @@ public class EditNoteActivity extends AppCompatActivity {
                 ".jpg",
                 storageDir
         );
-        currentPhotoPath = image.getAbsolutePath();
+        pendingCameraFile = image;
         return image;
     }
     
+    /**
+     * 显示ViewModel中导入完成的图片，旋转屏幕后重建的界面也能收到导入期间完成的结果
+     */
+    private void observeIngestResult() {
+        noteViewModel.getIngestResult().observe(this, result -> {
+            if (result == null || !result.consume()) {
+                return;
+            }
+            if (result.path != null) {
+                imageEdited = true;
+                currentPhotoPath = result.path;
+                displayImage(currentPhotoPath);
+            } else {
+                Toast.makeText(this, R.string.error_process_image, Toast.LENGTH_SHORT).show();
+            }
+        });
+    }
+    
     private void pickImageFromGallery() {
         pickImageLauncher.launch("image/*");
     }
     
+    private void showCurrentImage() {
+        if (currentPhotoPath != null && !currentPhotoPath.isEmpty()) {
+            displayImage(currentPhotoPath);
+        }
+    }
+    
     private void displayImage(String imagePath) {
         binding.ivImage.setVisibility(View.VISIBLE);
         binding.btnRemoveImage.setVisibility(View.VISIBLE);
@@ -215,6 +267,7 @@ public class EditNoteActivity extends AppCompatActivity {
                 .into(binding.ivImage);
                 
         binding.btnRemoveImage.setOnClickListener(v -> {
+            imageEdited = true;
             currentPhotoPath = null;
             binding.ivImage.setVisibility(View.GONE);
             binding.btnRemoveImage.setVisibility(View.GONE);
@@ -246,6 +299,11 @@ public class EditNoteActivity extends AppCompatActivity {
     }
     
     private void saveNote() {
+        if (noteViewModel.isIngestingImage()) {
+            Toast.makeText(this, R.string.image_processing, Toast.LENGTH_SHORT).show();
+            return;
+        }
+        
         String title = binding.etTitle.getText().toString().trim();
         String content = binding.etContent.getText().toString().trim();
         
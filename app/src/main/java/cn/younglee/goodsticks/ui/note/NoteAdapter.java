@@ -1,26 +1,39 @@
 package cn.younglee.goodsticks.ui.note;
 
+import android.graphics.Typeface;
+import android.text.SpannableString;
+import android.text.Spanned;
+import android.text.style.BackgroundColorSpan;
+import android.text.style.StyleSpan;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 
 import androidx.annotation.NonNull;
+import androidx.paging.PagingDataAdapter;
 import androidx.recyclerview.widget.DiffUtil;
-import androidx.recyclerview.widget.ListAdapter;
 import androidx.recyclerview.widget.RecyclerView;
 
-import com.bumptech.glide.Glide;
-
 import java.text.SimpleDateFormat;
+import java.util.List;
 import java.util.Locale;
+import java.util.Objects;
 
 import cn.younglee.goodsticks.R;
-import cn.younglee.goodsticks.data.entity.Note;
+import cn.younglee.goodsticks.data.entity.NoteSearchResult;
+import cn.younglee.goodsticks.data.entity.NoteSummary;
 import cn.younglee.goodsticks.databinding.ItemNoteBinding;
 
-public class NoteAdapter extends ListAdapter<Note, NoteAdapter.NoteViewHolder> {
+public class NoteAdapter extends PagingDataAdapter<NoteSummary, NoteAdapter.NoteViewHolder> {
+    
+    // 局部刷新的类型，由DIFF_CALLBACK.getChangePayload返回，可按位组合
+    static final int PAYLOAD_PINNED = 1;
+    static final int PAYLOAD_COLOR = 1 << 1;
+    static final int PAYLOAD_TIME = 1 << 2;
     
     private final NoteClickListener listener;
+    private final NoteThumbnails thumbnails;
+    private final PreviewTextCache previewTextCache = new PreviewTextCache();
     private static final SimpleDateFormat dateFormat = new SimpleDateFormat("MM月dd日 HH:mm", Locale.CHINESE);
     
     public interface NoteClickListener {
@@ -28,23 +41,58 @@ public class NoteAdapter extends ListAdapter<Note, NoteAdapter.NoteViewHolder> {
         void onNoteLongClick(long noteId);
     }
     
-    public NoteAdapter(NoteClickListener listener) {
+    public NoteAdapter(NoteClickListener listener, NoteThumbnails thumbnails) {
         super(DIFF_CALLBACK);
         this.listener = listener;
+        this.thumbnails = thumbnails;
     }
     
-    private static final DiffUtil.ItemCallback<Note> DIFF_CALLBACK = new DiffUtil.ItemCallback<Note>() {
+    // PagingDataAdapter在后台线程计算差异；标题、正文和图片通过内容指纹比较，不逐字符比较全文
+    private static final DiffUtil.ItemCallback<NoteSummary> DIFF_CALLBACK = new DiffUtil.ItemCallback<NoteSummary>() {
         @Override
-        public boolean areItemsTheSame(@NonNull Note oldItem, @NonNull Note newItem) {
+        public boolean areItemsTheSame(@NonNull NoteSummary oldItem, @NonNull NoteSummary newItem) {
             return oldItem.getId() == newItem.getId();
         }
         
         @Override
-        public boolean areContentsTheSame(@NonNull Note oldItem, @NonNull Note newItem) {
-            return oldItem.getTitle().equals(newItem.getTitle()) &&
-                   oldItem.getContent().equals(newItem.getContent()) &&
-                   oldItem.getModifiedDate().equals(newItem.getModifiedDate()) &&
-                   oldItem.isPinned() == newItem.isPinned();
+        public boolean areContentsTheSame(@NonNull NoteSummary oldItem, @NonNull NoteSummary newItem) {
+            return sameText(oldItem, newItem) && changedParts(oldItem, newItem) == 0;
+        }
+        
+        @Override
+        public Object getChangePayload(@NonNull NoteSummary oldItem, @NonNull NoteSummary newItem) {
+            // 文字或图片有变化时整体重新绑定，否则只刷新变化的部分
+            if (!sameText(oldItem, newItem)) {
+                return null;
+            }
+            return changedParts(oldItem, newItem);
+        }
+        
+        private boolean sameText(NoteSummary oldItem, NoteSummary newItem) {
+            if (oldItem.getContentHash() != newItem.getContentHash()) {
+                return false;
+            }
+            boolean oldIsResult = oldItem instanceof NoteSearchResult;
+            boolean newIsResult = newItem instanceof NoteSearchResult;
+            if (oldIsResult || newIsResult) {
+                return oldIsResult && newIsResult
+                        && ((NoteSearchResult) oldItem).hasSameSnippet((NoteSearchResult) newItem);
+            }
+            return true;
+        }
+        
+        private int changedParts(NoteSummary oldItem, NoteSummary newItem) {
+            int parts = 0;
+            if (oldItem.isPinned() != newItem.isPinned()) {
+                parts |= PAYLOAD_PINNED;
+            }
+            if (oldItem.getColor() != newItem.getColor()) {
+                parts |= PAYLOAD_COLOR;
+            }
+            if (!Objects.equals(oldItem.getModifiedDate(), newItem.getModifiedDate())) {
+                parts |= PAYLOAD_TIME;
+            }
+            return parts;
         }
     };
     
@@ -58,8 +106,42 @@ public class NoteAdapter extends ListAdapter<Note, NoteAdapter.NoteViewHolder> {
     
     @Override
     public void onBindViewHolder(@NonNull NoteViewHolder holder, int position) {
-        Note note = getItem(position);
-        holder.bind(note);
+        NoteSummary note = getItem(position);
+        if (note != null) {
+            holder.bind(note);
+        }
+    }
+    
+    @Override
+    public void onBindViewHolder(@NonNull NoteViewHolder holder, int position, @NonNull List<Object> payloads) {
+        if (payloads.isEmpty()) {
+            onBindViewHolder(holder, position);
+            return;
+        }
+        
+        // 只有置顶、颜色或时间变化时，不重新设置标题正文，也不重新加载图片
+        int parts = 0;
+        for (Object payload : payloads) {
+            if (!(payload instanceof Integer)) {
+                onBindViewHolder(holder, position);
+                return;
+            }
+            parts |= (Integer) payload;
+        }
+        
+        NoteSummary note = getItem(position);
+        if (note == null) {
+            return;
+        }
+        if ((parts & PAYLOAD_PINNED) != 0) {
+            holder.bindPinned(note);
+        }
+        if ((parts & PAYLOAD_COLOR) != 0) {
+            holder.bindColor(note);
+        }
+        if ((parts & PAYLOAD_TIME) != 0) {
+            holder.bindTime(note);
+        }
     }
     
     class NoteViewHolder extends RecyclerView.ViewHolder {
@@ -71,56 +153,77 @@ public class NoteAdapter extends ListAdapter<Note, NoteAdapter.NoteViewHolder> {
             
             binding.getRoot().setOnClickListener(v -> {
                 int position = getAdapterPosition();
-                if (position != RecyclerView.NO_POSITION) {
-                    listener.onNoteClick(getItem(position).getId());
+                if (position != RecyclerView.NO_POSITION && peek(position) != null) {
+                    listener.onNoteClick(peek(position).getId());
                 }
             });
             
             binding.getRoot().setOnLongClickListener(v -> {
                 int position = getAdapterPosition();
-                if (position != RecyclerView.NO_POSITION) {
-                    listener.onNoteLongClick(getItem(position).getId());
+                if (position != RecyclerView.NO_POSITION && peek(position) != null) {
+                    listener.onNoteLongClick(peek(position).getId());
                     return true;
                 }
                 return false;
             });
         }
         
-        void bind(Note note) {
+        void bind(NoteSummary note) {
+            // 搜索结果显示命中位置附近的摘要，高亮区间已在后台计算好
+            NoteSearchResult result = note instanceof NoteSearchResult ? (NoteSearchResult) note : null;
+            
             // 标题
             if (note.getTitle() != null && !note.getTitle().isEmpty()) {
-                binding.tvTitle.setText(note.getTitle());
+                binding.tvTitle.setText(result != null
+                        ? highlight(note.getTitle(), result.getTitleHighlights())
+                        : note.getTitle());
                 binding.tvTitle.setVisibility(View.VISIBLE);
             } else {
                 binding.tvTitle.setVisibility(View.GONE);
             }
             
-            // 内容
-            if (note.getContent() != null && !note.getContent().isEmpty()) {
-                binding.tvContent.setText(note.getContent());
+            // 内容预览，在后台排版；搜索摘要的高亮随搜索词变化，不缓存
+            if (result != null && result.getSnippet() != null && !result.getSnippet().isEmpty()) {
+                previewTextCache.setText(binding.tvContent, null,
+                        highlight(result.getSnippet(), result.getSnippetHighlights()));
+                binding.tvContent.setVisibility(View.VISIBLE);
+            } else if (note.getContentPreview() != null && !note.getContentPreview().isEmpty()) {
+                previewTextCache.setText(binding.tvContent,
+                        PreviewTextCache.keyOf(note.getId(), note.getContentHash()), note.getContentPreview());
                 binding.tvContent.setVisibility(View.VISIBLE);
             } else {
+                previewTextCache.clear(binding.tvContent);
                 binding.tvContent.setVisibility(View.GONE);
             }
             
-            // 时间
-            binding.tvTime.setText(dateFormat.format(note.getModifiedDate()));
+            bindTime(note);
             
-            // 图片
+            // 图片，按卡片尺寸加载缩略图
             if (note.getImagePath() != null && !note.getImagePath().isEmpty()) {
                 binding.ivImage.setVisibility(View.VISIBLE);
-                Glide.with(binding.getRoot())
-                        .load(note.getImagePath())
-                        .centerCrop()
-                        .into(binding.ivImage);
+                thumbnails.load(note.getImagePath()).into(binding.ivImage);
             } else {
+                // 释放复用前加载的图片
+                thumbnails.getRequests().clear(binding.ivImage);
                 binding.ivImage.setVisibility(View.GONE);
             }
             
-            // 置顶标记
+            bindPinned(note);
+            bindColor(note);
+        }
+        
+        // 时间
+        void bindTime(NoteSummary note) {
+            binding.tvTime.setText(dateFormat.format(note.getModifiedDate()));
+        }
+        
+        // 置顶标记
+        void bindPinned(NoteSummary note) {
             binding.ivPinned.setVisibility(note.isPinned() ? View.VISIBLE : View.GONE);
-            
-            // 背景颜色
+        }
+        
+        // 背景颜色
+        void bindColor(NoteSummary note) {
             if (note.getColor() != 0) {
                 binding.cardView.setCardBackgroundColor(note.getColor());
             } else {
@@ -128,5 +231,19 @@ public class NoteAdapter extends ListAdapter<Note, NoteAdapter.NoteViewHolder> {
                         binding.getRoot().getContext().getColor(R.color.card_background));
             }
         }
+        
+        private CharSequence highlight(String text, List<int[]> ranges) {
+            if (ranges.isEmpty()) {
+                return text;
+            }
+            
+            SpannableString spannable = new SpannableString(text);
+            int color = binding.getRoot().getContext().getColor(R.color.search_highlight);
+            for (int[] range : ranges) {
+                spannable.setSpan(new StyleSpan(Typeface.BOLD), range[0], range[1], Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
+                spannable.setSpan(new BackgroundColorSpan(color), range[0], range[1], Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
+            }
+            return spannable;
+        }
     }
 } 
\ No newline at end of file
@@ -0,0 +1,149 @@
+package cn.younglee.goodsticks.ui.note;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.graphics.drawable.Drawable;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+import androidx.recyclerview.widget.StaggeredGridLayoutManager;
+
+import com.bumptech.glide.ListPreloader;
+import com.bumptech.glide.RequestBuilder;
+import com.bumptech.glide.RequestManager;
+import com.bumptech.glide.load.engine.DiskCacheStrategy;
+import com.bumptech.glide.signature.ObjectKey;
+import com.bumptech.glide.util.FixedPreloadSizeProvider;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.List;
+
+import cn.younglee.goodsticks.R;
+import cn.younglee.goodsticks.data.entity.NoteSummary;
+import cn.younglee.goodsticks.utils.ImageStore;
+
+/**
+ * 笔记卡片的缩略图
+ * 按卡片中图片的实际尺寸解码并缓存到磁盘。图片以内容哈希命名（见ImageStore），内容变化时路径随之变化，
+ * 缓存键只需图片路径，绑定时不必读取文件的修改时间。
+ * 早期版本保存在其他目录的图片不以内容命名，可能被原地覆盖，这些图片的缓存键另外加上文件的修改时间。
+ * 列表绑定和预加载使用相同的请求参数，预加载的结果可以直接命中内存缓存
+ */
+public class NoteThumbnails {
+
+    private final RequestManager requests;
+    private final String imageDirPrefix;
+    private final int width;
+    private final int height;
+
+    /**
+     * @param requests 与列表所在界面生命周期绑定的Glide请求管理器
+     * @param context 上下文
+     * @param spanCount 列表的列数
+     */
+    public NoteThumbnails(RequestManager requests, Context context, int spanCount) {
+        this.requests = requests;
+        this.imageDirPrefix = ImageStore.getDirectory(context).getAbsolutePath() + File.separator;
+        Resources res = context.getResources();
+        int listWidth = res.getDisplayMetrics().widthPixels
+                - 2 * res.getDimensionPixelSize(R.dimen.note_list_padding);
+        int cardInset = 2 * (res.getDimensionPixelSize(R.dimen.note_card_margin)
+                + res.getDimensionPixelSize(R.dimen.note_card_padding));
+        this.width = Math.max(1, listWidth / spanCount - cardInset);
+        this.height = res.getDimensionPixelSize(R.dimen.note_image_height);
+    }
+
+    /**
+     * 创建缩略图请求
+     * @param imagePath 图片路径或content URI
+     */
+    RequestBuilder<Drawable> load(String imagePath) {
+        RequestBuilder<Drawable> request = requests.load(imagePath)
+                .override(width, height)
+                .centerCrop()
+                .diskCacheStrategy(DiskCacheStrategy.RESOURCE);
+        if (imagePath.startsWith(File.separator) && !imagePath.startsWith(imageDirPrefix)) {
+            request = request.signature(new ObjectKey(new File(imagePath).lastModified()));
+        }
+        return request;
+    }
+
+    RequestManager getRequests() {
+        return requests;
+    }
+
+    /**
+     * 创建列表滚动时预加载缩略图的监听器
+     * Glide自带的RecyclerViewPreloader只支持LinearLayoutManager，这里按可见范围驱动ListPreloader，
+     * 同时支持瀑布流布局
+     * @param adapter 笔记列表的适配器
+     * @param maxPreload 向滚动方向预加载的条目数
+     */
+    public RecyclerView.OnScrollListener createPreloader(NoteAdapter adapter, int maxPreload) {
+        ListPreloader<NoteSummary> preloader = new ListPreloader<>(requests,
+                new ListPreloader.PreloadModelProvider<NoteSummary>() {
+                    @NonNull
+                    @Override
+                    public List<NoteSummary> getPreloadItems(int position) {
+                        NoteSummary note = position < adapter.getItemCount() ? adapter.peek(position) : null;
+                        if (note == null || note.getImagePath() == null || note.getImagePath().isEmpty()) {
+                            return Collections.emptyList();
+                        }
+                        return Collections.singletonList(note);
+                    }
+
+                    @Override
+                    public RequestBuilder<?> getPreloadRequestBuilder(@NonNull NoteSummary note) {
+                        return load(note.getImagePath());
+                    }
+                },
+                new FixedPreloadSizeProvider<>(width, height),
+                maxPreload);
+
+        return new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+                int first;
+                int last;
+                RecyclerView.LayoutManager layoutManager = recyclerView.getLayoutManager();
+                if (layoutManager instanceof StaggeredGridLayoutManager) {
+                    StaggeredGridLayoutManager grid = (StaggeredGridLayoutManager) layoutManager;
+                    first = min(grid.findFirstVisibleItemPositions(null));
+                    last = max(grid.findLastVisibleItemPositions(null));
+                } else if (layoutManager instanceof LinearLayoutManager) {
+                    LinearLayoutManager linear = (LinearLayoutManager) layoutManager;
+                    first = linear.findFirstVisibleItemPosition();
+                    last = linear.findLastVisibleItemPosition();
+                } else {
+                    return;
+                }
+
+                if (first == RecyclerView.NO_POSITION || last < first) {
+                    return;
+                }
+                preloader.onScroll(null, first, last - first + 1, adapter.getItemCount());
+            }
+        };
+    }
+
+    private static int min(int[] positions) {
+        int result = RecyclerView.NO_POSITION;
+        for (int position : positions) {
+            if (position != RecyclerView.NO_POSITION
+                    && (result == RecyclerView.NO_POSITION || position < result)) {
+                result = position;
+            }
+        }
+        return result;
+    }
+
+    private static int max(int[] positions) {
+        int result = RecyclerView.NO_POSITION;
+        for (int position : positions) {
+            result = Math.max(result, position);
+        }
+        return result;
+    }
+}
@@ -1,37 +1,149 @@
 package cn.younglee.goodsticks.ui.note;
 
 import android.app.Application;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
 import androidx.lifecycle.AndroidViewModel;
 import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+import androidx.lifecycle.Transformations;
+import androidx.lifecycle.ViewModelKt;
+import androidx.paging.PagingData;
+import androidx.paging.PagingLiveData;
 
-import java.util.List;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
 
 import cn.younglee.goodsticks.data.entity.Note;
+import cn.younglee.goodsticks.data.entity.NoteSummary;
 import cn.younglee.goodsticks.data.repository.NoteRepository;
+import cn.younglee.goodsticks.utils.AppExecutors;
+import cn.younglee.goodsticks.utils.ImageIngestor;
 
 public class NoteViewModel extends AndroidViewModel {
+    private static final String TAG = "NoteViewModel";
+    
+    // 输入停止该时间后才执行搜索
+    private static final long SEARCH_DEBOUNCE_MS = 300;
     
     private final NoteRepository repository;
-    private final LiveData<List<Note>> allNotes;
+    private final LiveData<PagingData<NoteSummary>> pagedNotes;
+    private final LiveData<PagingData<NoteSummary>> notes;
+    
+    // 当前生效的搜索词，为空时显示全部笔记
+    private final MutableLiveData<String> searchQuery = new MutableLiveData<>("");
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private String pendingQuery = "";
+    private final Runnable applySearchQuery = () -> searchQuery.setValue(pendingQuery);
+    
+    // 编辑界面导入的图片，导入期间旋转屏幕时重建的界面仍能收到结果
+    private final MutableLiveData<IngestResult> ingestResult = new MutableLiveData<>();
+    // 正在导入的图片数量，只在主线程访问
+    private int pendingIngests;
+    // 每次导入递增，较早开始的导入晚于之后的导入完成时丢弃其结果
+    private int ingestGeneration;
     
     public NoteViewModel(@NonNull Application application) {
+        this(application, new NoteRepository(application));
+    }
+    
+    /**
+     * 使用指定的Repository，用于测试
+     */
+    @VisibleForTesting
+    public NoteViewModel(@NonNull Application application, NoteRepository repository) {
         super(application);
-        repository = new NoteRepository(application);
-        allNotes = repository.getAllNotes();
+        this.repository = repository;
+        // 缓存在ViewModel作用域内，配置变更后无需重新加载
+        pagedNotes = PagingLiveData.cachedIn(
+                PagingLiveData.getLiveData(repository.getNotesPager()),
+                ViewModelKt.getViewModelScope(this));
+        
+        // 同一时间只观察一个查询，搜索词变化时switchMap移除上一个查询的LiveData，
+        // 被替换的查询不再随表变化重新执行，其尚未返回的结果也会被丢弃
+        notes = Transformations.switchMap(Transformations.distinctUntilChanged(searchQuery), query -> {
+            if (query.isEmpty()) {
+                return pagedNotes;
+            }
+            // 搜索结果按相关度排序
+            return Transformations.map(repository.searchRanked(query),
+                    results -> PagingData.from(new ArrayList<NoteSummary>(results)));
+        });
     }
     
-    public LiveData<List<Note>> getAllNotes() {
-        return allNotes;
+    /**
+     * 首页显示的笔记，没有搜索词时为分页的全部笔记，否则为搜索结果
+     */
+    public LiveData<PagingData<NoteSummary>> getNotes() {
+        return notes;
     }
     
-    public LiveData<Note> getNoteById(long id) {
-        return repository.getNoteById(id);
+    /**
+     * 更新搜索词，连续输入时只在停止输入SEARCH_DEBOUNCE_MS后执行一次搜索，清空时立即恢复全部笔记
+     * @param query 用户输入的搜索词
+     */
+    public void setSearchQuery(String query) {
+        handler.removeCallbacks(applySearchQuery);
+        pendingQuery = query == null ? "" : query.trim();
+        if (pendingQuery.isEmpty()) {
+            applySearchQuery.run();
+        } else {
+            handler.postDelayed(applySearchQuery, SEARCH_DEBOUNCE_MS);
+        }
     }
     
-    public LiveData<List<Note>> searchNotes(String searchQuery) {
-        return repository.searchNotes(searchQuery);
+    /**
+     * 在后台把选中的图片降采样、旋转并压缩保存到应用目录，结果通过getIngestResult()发布
+     * @param source 图片来源
+     * @param original 导入后需要删除的原图，没有则为null
+     */
+    public void ingestImage(Uri source, @Nullable File original) {
+        pendingIngests++;
+        int generation = ++ingestGeneration;
+        Application application = getApplication();
+        AppExecutors.io().execute(() -> {
+            String path = null;
+            try {
+                path = ImageIngestor.ingest(application, source);
+            } catch (IOException | SecurityException e) {
+                Log.e(TAG, "导入图片失败", e);
+            }
+            if (original != null) {
+                original.delete();
+            }
+            
+            String ingestedPath = path;
+            handler.post(() -> {
+                pendingIngests--;
+                if (generation != ingestGeneration) {
+                    // 未被采用的图片没有笔记引用，由ImageStore的清理任务删除
+                    return;
+                }
+                ingestResult.setValue(new IngestResult(ingestedPath));
+            });
+        });
+    }
+    
+    /**
+     * 最近一次导入的结果，界面取用后调用IngestResult.consume()，重建的界面不会重复处理
+     */
+    public LiveData<IngestResult> getIngestResult() {
+        return ingestResult;
+    }
+    
+    public boolean isIngestingImage() {
+        return pendingIngests > 0;
+    }
+    
+    public LiveData<Note> getNoteById(long id) {
+        return repository.getNoteById(id);
     }
     
     public void insert(Note note) {
@@ -53,4 +165,34 @@ public class NoteViewModel extends AndroidViewModel {
     public void updatePinStatus(long id, boolean isPinned) {
         repository.updatePinStatus(id, isPinned);
     }
+    
+    @Override
+    protected void onCleared() {
+        super.onCleared();
+        handler.removeCallbacks(applySearchQuery);
+    }
+    
+    /**
+     * 一次图片导入的结果，只被处理一次
+     */
+    public static class IngestResult {
+        // 导入后的图片路径，失败时为null
+        public final String path;
+        private boolean consumed;
+        
+        IngestResult(String path) {
+            this.path = path;
+        }
+        
+        /**
+         * @return 第一次调用时返回true
+         */
+        public boolean consume() {
+            if (consumed) {
+                return false;
+            }
+            consumed = true;
+            return true;
+        }
+    }
 } 
\ No newline at end of file
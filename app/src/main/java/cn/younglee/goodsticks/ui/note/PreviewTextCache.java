@@ -0,0 +1,71 @@
+package cn.younglee.goodsticks.ui.note;
+
+import android.util.LruCache;
+
+import androidx.appcompat.widget.AppCompatTextView;
+import androidx.core.text.PrecomputedTextCompat;
+import androidx.core.widget.TextViewCompat;
+
+import java.util.concurrent.FutureTask;
+
+import cn.younglee.goodsticks.utils.AppExecutors;
+
+/**
+ * 笔记卡片正文的预排版
+ * 文字的测量和断行在后台线程完成，结果按笔记id和内容指纹缓存，列表滚动时主线程只需应用排好的文字
+ */
+class PreviewTextCache {
+
+    private static final int MAX_ENTRIES = 300;
+
+    private final LruCache<String, PrecomputedTextCompat> cache = new LruCache<>(MAX_ENTRIES);
+    private PrecomputedTextCompat.Params params;
+
+    /**
+     * 生成缓存键，内容变化后指纹随之变化，旧的排版结果不会再被使用
+     */
+    static String keyOf(long noteId, long contentHash) {
+        return noteId + ":" + contentHash;
+    }
+
+    /**
+     * 为TextView设置预排版的文字
+     * 命中缓存时直接应用，否则提交到后台排版，TextView在测量时取用结果
+     * @param view 显示文字的TextView
+     * @param key 缓存键，为null时不缓存（如带高亮的搜索摘要）
+     * @param text 文字
+     */
+    void setText(AppCompatTextView view, String key, CharSequence text) {
+        // 排版结果只适用于相同的字体参数，参数变化（如切换主题）时清空缓存
+        PrecomputedTextCompat.Params current = TextViewCompat.getTextMetricsParams(view);
+        if (!current.equals(params)) {
+            params = current;
+            cache.evictAll();
+        }
+
+        PrecomputedTextCompat cached = key != null ? cache.get(key) : null;
+        if (cached != null) {
+            // 先丢弃尚未取用的排版任务，否则测量时会覆盖这里设置的文字
+            view.setTextFuture(null);
+            TextViewCompat.setPrecomputedText(view, cached);
+            return;
+        }
+
+        FutureTask<PrecomputedTextCompat> task = new FutureTask<>(() -> {
+            PrecomputedTextCompat precomputed = PrecomputedTextCompat.create(text, current);
+            if (key != null) {
+                cache.put(key, precomputed);
+            }
+            return precomputed;
+        });
+        AppExecutors.compute().execute(task);
+        view.setTextFuture(task);
+    }
+
+    /**
+     * 清除TextView上尚未取用的排版任务
+     */
+    void clear(AppCompatTextView view) {
+        view.setTextFuture(null);
+    }
+}
@@ -1,6 +1,7 @@
 package cn.younglee.goodsticks.ui.settings;
 
 import android.Manifest;
+import android.content.Context;
 import android.content.DialogInterface;
 import android.content.Intent;
 import android.content.SharedPreferences;
@@ -11,7 +12,6 @@ import android.net.Uri;
 import android.os.Bundle;
 import android.provider.MediaStore;
 import android.text.TextUtils;
-import android.util.Base64;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -46,8 +46,7 @@ import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.List;
 import java.util.Locale;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.CompletableFuture;
 
 import cn.younglee.goodsticks.GoodSticksApplication;
 import cn.younglee.goodsticks.R;
@@ -55,6 +54,9 @@ import cn.younglee.goodsticks.data.entity.User;
 import cn.younglee.goodsticks.data.repository.UserRepository;
 import cn.younglee.goodsticks.databinding.FragmentSettingsBinding;
 import cn.younglee.goodsticks.ui.auth.LoginActivity;
+import cn.younglee.goodsticks.ui.splash.SplashActivity;
+import cn.younglee.goodsticks.utils.AppExecutors;
+import cn.younglee.goodsticks.utils.AvatarStore;
 import cn.younglee.goodsticks.utils.ThemeUtils;
 import cn.younglee.goodsticks.utils.WebDavUtils;
 
@@ -66,7 +68,6 @@ public class SettingsFragment extends Fragment {
     private ImageView currentAvatarImageView;
     private long currentUserId;
     private UserRepository userRepository;
-    private ExecutorService executor = Executors.newSingleThreadExecutor();
     private BackupFileAdapter backupFileAdapter;
     
     // 拍照启动器
@@ -131,6 +132,11 @@ public class SettingsFragment extends Fragment {
         // 隐藏深色模式开关
         binding.cardDarkMode.setVisibility(View.GONE);
         
+        // 启动动画
+        binding.switchSplashAnimation.setChecked(prefs.getBoolean(SplashActivity.KEY_FULL_ANIMATION, false));
+        binding.switchSplashAnimation.setOnCheckedChangeListener((buttonView, isChecked) ->
+                prefs.edit().putBoolean(SplashActivity.KEY_FULL_ANIMATION, isChecked).apply());
+        
         // 主题色选择
         binding.layoutThemeColor.setOnClickListener(v -> showThemeColorDialog());
         
@@ -257,14 +263,24 @@ public class SettingsFragment extends Fragment {
         String currentUsername = prefs.getString("username", "");
         etUsername.setText(currentUsername);
         
-        // 加载当前头像到对话框
-        String avatarKey = "avatar_" + currentUserId;
-        String avatarBase64 = prefs.getString(avatarKey, "");
-        if (!TextUtils.isEmpty(avatarBase64)) {
-            byte[] decodedBytes = Base64.decode(avatarBase64, Base64.DEFAULT);
-            Bitmap bitmap = BitmapFactory.decodeByteArray(decodedBytes, 0, decodedBytes.length);
-            ivAvatar.setImageBitmap(bitmap);
+        // 加载当前头像到对话框，设置页打开时通常已读取到缓存中，尚未读取完成时在后台读取
+        Bitmap avatar = AvatarStore.getCachedBitmap(currentUserId);
+        if (avatar != null) {
+            ivAvatar.setImageBitmap(avatar);
             ivAvatar.setColorFilter(null);
+        } else {
+            AvatarStore.loadBitmap(requireContext(), currentUserId).thenAccept(bitmap -> {
+                if (bitmap == null || getActivity() == null) {
+                    return;
+                }
+                getActivity().runOnUiThread(() -> {
+                    // 读取期间换了新头像时，缓存中已是新头像，不再显示旧的
+                    if (AvatarStore.getCachedBitmap(currentUserId) == bitmap) {
+                        ivAvatar.setImageBitmap(bitmap);
+                        ivAvatar.setColorFilter(null);
+                    }
+                });
+            });
         }
         
         currentAvatarImageView = ivAvatar;
@@ -348,32 +364,48 @@ public class SettingsFragment extends Fragment {
     }
     
     private void updateAvatar(Uri uri) {
-        try {
-            InputStream inputStream = requireContext().getContentResolver().openInputStream(uri);
-            Bitmap bitmap = BitmapFactory.decodeStream(inputStream);
-            inputStream.close();
-            
-            // 压缩图片
-            int maxSize = 512;
-            int width = bitmap.getWidth();
-            int height = bitmap.getHeight();
-            
-            if (width > maxSize || height > maxSize) {
-                float scale = Math.min((float) maxSize / width, (float) maxSize / height);
-                width = Math.round(scale * width);
-                height = Math.round(scale * height);
-                bitmap = Bitmap.createScaledBitmap(bitmap, width, height, true);
+        // 解码、压缩和加密写入在io线程执行，完成后回到主线程更新缓存和界面
+        Context appContext = requireContext().getApplicationContext();
+        long userId = currentUserId;
+        CompletableFuture.supplyAsync(() -> {
+            try (InputStream inputStream = appContext.getContentResolver().openInputStream(uri)) {
+                Bitmap bitmap = BitmapFactory.decodeStream(inputStream);
+                if (bitmap == null) {
+                    return null;
+                }
+                
+                // 压缩图片
+                int maxSize = 512;
+                int width = bitmap.getWidth();
+                int height = bitmap.getHeight();
+                
+                if (width > maxSize || height > maxSize) {
+                    float scale = Math.min((float) maxSize / width, (float) maxSize / height);
+                    width = Math.round(scale * width);
+                    height = Math.round(scale * height);
+                    bitmap = Bitmap.createScaledBitmap(bitmap, width, height, true);
+                }
+                
+                // 压缩为JPEG，保存为按用户ID区分的加密文件
+                ByteArrayOutputStream baos = new ByteArrayOutputStream();
+                bitmap.compress(Bitmap.CompressFormat.JPEG, 80, baos);
+                AvatarStore.write(appContext, userId, baos.toByteArray());
+                return bitmap;
+            } catch (IOException | SecurityException e) {
+                e.printStackTrace();
+                return null;
+            }
+        }, AppExecutors.io()).thenAcceptAsync(bitmap -> {
+            if (bitmap == null) {
+                if (getContext() != null) {
+                    Toast.makeText(getContext(), R.string.error_process_image, Toast.LENGTH_SHORT).show();
+                }
+                return;
+            }
+            AvatarStore.putCachedBitmap(userId, bitmap);
+            if (binding == null || userId != currentUserId) {
+                return;
             }
-            
-            // 转换为Base64保存
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            bitmap.compress(Bitmap.CompressFormat.JPEG, 80, baos);
-            byte[] bytes = baos.toByteArray();
-            String base64 = Base64.encodeToString(bytes, Base64.DEFAULT);
-            
-            // 保存到SharedPreferences，使用用户ID区分
-            String avatarKey = "avatar_" + currentUserId;
-            prefs.edit().putString(avatarKey, base64).apply();
             
             // 更新UI
             if (currentAvatarImageView != null) {
@@ -384,22 +416,28 @@ public class SettingsFragment extends Fragment {
             binding.ivAvatar.setColorFilter(null);
             
             Toast.makeText(getContext(), R.string.avatar_updated, Toast.LENGTH_SHORT).show();
-            
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
+        }, ContextCompat.getMainExecutor(appContext));
     }
     
     private void loadAvatar() {
-        // 使用用户ID获取对应的头像
-        String avatarKey = "avatar_" + currentUserId;
-        String avatarBase64 = prefs.getString(avatarKey, "");
-        if (!TextUtils.isEmpty(avatarBase64)) {
-            byte[] decodedBytes = Base64.decode(avatarBase64, Base64.DEFAULT);
-            Bitmap bitmap = BitmapFactory.decodeByteArray(decodedBytes, 0, decodedBytes.length);
-            binding.ivAvatar.setImageBitmap(bitmap);
+        // 使用用户ID获取对应的头像，在后台读取解密
+        Bitmap cached = AvatarStore.getCachedBitmap(currentUserId);
+        if (cached != null) {
+            binding.ivAvatar.setImageBitmap(cached);
             binding.ivAvatar.setColorFilter(null);
+            return;
         }
+        AvatarStore.loadBitmap(requireContext(), currentUserId).thenAccept(bitmap -> {
+            if (bitmap == null || getActivity() == null) {
+                return;
+            }
+            getActivity().runOnUiThread(() -> {
+                if (binding != null) {
+                    binding.ivAvatar.setImageBitmap(bitmap);
+                    binding.ivAvatar.setColorFilter(null);
+                }
+            });
+        });
     }
     
     /**
@@ -610,7 +648,6 @@ public class SettingsFragment extends Fragment {
     public void onDestroyView() {
         super.onDestroyView();
         binding = null;
-        executor.shutdown();
     }
     
     /**
@@ -7,32 +7,62 @@ import android.content.SharedPreferences;
 import android.os.Bundle;
 import android.os.Handler;
 import android.os.Looper;
+import android.os.SystemClock;
 
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.core.content.ContextCompat;
 
 import cn.younglee.goodsticks.GoodSticksApplication;
 import cn.younglee.goodsticks.MainActivity;
+import cn.younglee.goodsticks.R;
 import cn.younglee.goodsticks.databinding.ActivitySplashBinding;
 import cn.younglee.goodsticks.ui.auth.LoginActivity;
+import cn.younglee.goodsticks.utils.AppStartup;
 import cn.younglee.goodsticks.utils.ThemeUtils;
 
 public class SplashActivity extends AppCompatActivity {
     
+    // 配置项：初始化完成后是否仍等待启动动画播放完毕
+    public static final String KEY_FULL_ANIMATION = "splash_full_animation";
+    
     private ActivitySplashBinding binding;
-    private static final int SPLASH_DURATION = 2000; // 2秒
     
     @Override
     protected void onCreate(Bundle savedInstanceState) {
-        ThemeUtils.applyTheme(this);
+        // 配置还在后台初始化时使用启动页的默认主题，不等待Keystore
+        if (GoodSticksApplication.getInstance().isSecureSharedPreferencesReady()) {
+            ThemeUtils.applyTheme(this);
+        }
         super.onCreate(savedInstanceState);
         binding = ActivitySplashBinding.inflate(getLayoutInflater());
         setContentView(binding.getRoot());
+        AppStartup.reportFirstFrame(this);
         
         // 启动动画
         startAnimation();
         
-        // 延迟后跳转
-        new Handler(Looper.getMainLooper()).postDelayed(this::checkAndNavigate, SPLASH_DURATION);
+        // 配置和数据库就绪后即可判断登录状态，初始化失败时同样跳转，由后续界面处理
+        long shownAt = SystemClock.uptimeMillis();
+        AppStartup.whenReady().whenCompleteAsync((result, error) -> {
+            long remaining = getMinDisplayMillis(error == null) - (SystemClock.uptimeMillis() - shownAt);
+            new Handler(Looper.getMainLooper()).postDelayed(this::checkAndNavigate, Math.max(0, remaining));
+        }, ContextCompat.getMainExecutor(this));
+    }
+    
+    /**
+     * 启动页的最短显示时间
+     * 默认只让渐入动画开始播放，设置中开启完整播放时等待动画结束。初始化失败时不读取配置，使用默认时间
+     * @param startupSucceeded 启动初始化是否成功
+     */
+    private long getMinDisplayMillis(boolean startupSucceeded) {
+        GoodSticksApplication app = GoodSticksApplication.getInstance();
+        if (!startupSucceeded || !app.isSecureSharedPreferencesReady()) {
+            return getResources().getInteger(R.integer.splash_min_display_millis);
+        }
+        SharedPreferences prefs = app.getSecureSharedPreferences();
+        return getResources().getInteger(prefs.getBoolean(KEY_FULL_ANIMATION, false)
+                ? R.integer.splash_full_animation_millis
+                : R.integer.splash_min_display_millis);
     }
     
     private void startAnimation() {
@@ -61,9 +91,19 @@ public class SplashActivity extends AppCompatActivity {
     }
     
     private void checkAndNavigate() {
-        SharedPreferences prefs = GoodSticksApplication.getInstance().getSecureSharedPreferences();
-        boolean isLoggedIn = prefs.getBoolean("is_logged_in", false);
-        boolean rememberPassword = prefs.getBoolean("remember_password", false);
+        if (isFinishing() || isDestroyed()) {
+            return;
+        }
+        
+        // 配置初始化失败时无法读取登录状态，进入登录页
+        GoodSticksApplication app = GoodSticksApplication.getInstance();
+        boolean isLoggedIn = false;
+        boolean rememberPassword = false;
+        if (app.isSecureSharedPreferencesReady()) {
+            SharedPreferences prefs = app.getSecureSharedPreferences();
+            isLoggedIn = prefs.getBoolean("is_logged_in", false);
+            rememberPassword = prefs.getBoolean("remember_password", false);
+        }
         
         Intent intent;
         if (isLoggedIn && rememberPassword) {
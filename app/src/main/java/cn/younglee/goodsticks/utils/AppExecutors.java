@@ -0,0 +1,198 @@
+package cn.younglee.goodsticks.utils;
+
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import java.util.Locale;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 应用统一的线程调度
+ * 数据库写入在单个线程上串行执行（SQLite同一时间只允许一个写入者），读取在多个线程上并行执行，
+ * 备份、数据迁移等耗时任务使用低优先级的后台线程，不与界面相关的读写争抢CPU。
+ * 文字排版等为界面准备数据的计算使用单独的线程，不被数据库任务阻塞。
+ * Keystore初始化、图片导入、头像读取等较慢的文件读写和解码使用单独的线程池，不占用界面计算线程。
+ * 各线程池记录排队数量和等待时间，任务等待过久时输出警告日志。
+ */
+public class AppExecutors {
+    private static final String TAG = "AppExecutors";
+
+    private static final int READER_THREADS =
+            Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors()));
+
+    // 任务排队超过该时间时输出警告
+    private static final long SLOW_WAIT_MILLIS = 200;
+
+    // 空闲线程的存活时间
+    private static final long KEEP_ALIVE_SECONDS = 30;
+
+    private static final MonitoredExecutor writer =
+            new MonitoredExecutor("db-writer", 1, Process.THREAD_PRIORITY_DEFAULT);
+    private static final MonitoredExecutor reader =
+            new MonitoredExecutor("db-reader", READER_THREADS, Process.THREAD_PRIORITY_DEFAULT);
+    private static final MonitoredExecutor background =
+            new MonitoredExecutor("background", 1, Process.THREAD_PRIORITY_BACKGROUND);
+    private static final MonitoredExecutor compute =
+            new MonitoredExecutor("ui-compute", 1, Process.THREAD_PRIORITY_DEFAULT);
+    private static final MonitoredExecutor io =
+            new MonitoredExecutor("io", 2, Process.THREAD_PRIORITY_DEFAULT);
+    private static final MonitoredExecutor prefsWriter =
+            new MonitoredExecutor("prefs-writer", 1, Process.THREAD_PRIORITY_DEFAULT);
+
+    /**
+     * 数据库写入线程，Repository的写入在该线程上串行执行
+     * 在该线程上不能同步等待提交到该线程的其他任务
+     */
+    public static MonitoredExecutor writer() {
+        return writer;
+    }
+
+    /**
+     * 数据库读取线程池，同时作为Room的查询线程池
+     */
+    public static MonitoredExecutor reader() {
+        return reader;
+    }
+
+    /**
+     * 低优先级后台线程，用于WebDAV备份恢复、数据迁移等不需要立即完成的任务
+     */
+    public static MonitoredExecutor background() {
+        return background;
+    }
+
+    /**
+     * 界面计算线程，用于列表文字预排版等需要尽快完成、但不应在主线程执行的计算
+     */
+    public static MonitoredExecutor compute() {
+        return compute;
+    }
+    
+    /**
+     * 文件线程池，用于启动时的Keystore初始化、图片导入、头像解密解码等用户在等待结果、但单个任务可能耗时数百毫秒的文件读写和解码
+     */
+    public static MonitoredExecutor io() {
+        return io;
+    }
+    
+    /**
+     * 配置写入线程，按顺序把内存中的配置修改写回加密存储
+     */
+    public static MonitoredExecutor prefsWriter() {
+        return prefsWriter;
+    }
+    
+    /**
+     * 输出各线程池的统计信息
+     */
+    public static void logStats() {
+        Log.d(TAG, writer.getStats());
+        Log.d(TAG, reader.getStats());
+        Log.d(TAG, background.getStats());
+        Log.d(TAG, compute.getStats());
+        Log.d(TAG, io.getStats());
+        Log.d(TAG, prefsWriter.getStats());
+    }
+
+    /**
+     * 记录排队数量和等待时间的线程池
+     */
+    public static class MonitoredExecutor extends ThreadPoolExecutor {
+        private final String name;
+        private final AtomicLong submittedCount = new AtomicLong();
+        private final AtomicLong completedCount = new AtomicLong();
+        private final AtomicLong totalWaitMillis = new AtomicLong();
+        private final AtomicLong maxWaitMillis = new AtomicLong();
+        private final AtomicInteger maxQueueDepth = new AtomicInteger();
+
+        MonitoredExecutor(String name, int threads, int priority) {
+            super(threads, threads, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<>(), new PriorityThreadFactory(name, priority));
+            this.name = name;
+            allowCoreThreadTimeOut(true);
+        }
+
+        @Override
+        public void execute(@NonNull Runnable command) {
+            long enqueuedAt = SystemClock.elapsedRealtime();
+            submittedCount.incrementAndGet();
+            super.execute(() -> {
+                recordWait(SystemClock.elapsedRealtime() - enqueuedAt);
+                try {
+                    command.run();
+                } finally {
+                    completedCount.incrementAndGet();
+                }
+            });
+            maxQueueDepth.accumulateAndGet(getQueue().size(), Math::max);
+        }
+
+        private void recordWait(long waitMillis) {
+            totalWaitMillis.addAndGet(waitMillis);
+            maxWaitMillis.accumulateAndGet(waitMillis, Math::max);
+            if (waitMillis > SLOW_WAIT_MILLIS) {
+                Log.w(TAG, name + " 任务排队 " + waitMillis + "ms，当前队列长度 " + getQueue().size());
+            }
+        }
+
+        /**
+         * @return 当前排队等待执行的任务数
+         */
+        public int getQueueDepth() {
+            return getQueue().size();
+        }
+
+        public int getMaxQueueDepth() {
+            return maxQueueDepth.get();
+        }
+
+        /**
+         * @return 已开始执行的任务的平均排队时间，毫秒
+         */
+        public long getAverageWaitMillis() {
+            long started = submittedCount.get() - getQueue().size();
+            return started > 0 ? totalWaitMillis.get() / started : 0;
+        }
+
+        public long getMaxWaitMillis() {
+            return maxWaitMillis.get();
+        }
+
+        public String getStats() {
+            return String.format(Locale.ROOT,
+                    "%s: submitted=%d completed=%d queue=%d maxQueue=%d avgWait=%dms maxWait=%dms",
+                    name, submittedCount.get(), completedCount.get(), getQueueDepth(),
+                    getMaxQueueDepth(), getAverageWaitMillis(), getMaxWaitMillis());
+        }
+    }
+
+    /**
+     * 按名称编号并设置线程优先级的线程工厂
+     */
+    private static class PriorityThreadFactory implements ThreadFactory {
+        private final String name;
+        private final int priority;
+        private final AtomicInteger count = new AtomicInteger();
+
+        PriorityThreadFactory(String name, int priority) {
+            this.name = name;
+            this.priority = priority;
+        }
+
+        @Override
+        public Thread newThread(@NonNull Runnable runnable) {
+            return new Thread(() -> {
+                Process.setThreadPriority(priority);
+                runnable.run();
+            }, name + "-" + count.incrementAndGet());
+        }
+    }
+}
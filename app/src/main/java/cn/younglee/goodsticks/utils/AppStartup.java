@@ -0,0 +1,97 @@
+package cn.younglee.goodsticks.utils;
+
+import android.app.Activity;
+import android.content.Context;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+import android.view.View;
+import android.view.ViewTreeObserver;
+
+import java.util.concurrent.CompletableFuture;
+
+import cn.younglee.goodsticks.data.database.AppDatabase;
+
+/**
+ * 冷启动流程
+ * 加密配置需要访问Keystore，Room数据库首次打开可能执行迁移，两者都较慢。
+ * 这里在Application创建时把它们并行放到后台线程初始化，启动页在两者完成后即可跳转，不再固定等待。
+ * 同时记录从进程启动到各阶段、首帧和可交互的耗时
+ */
+public class AppStartup {
+    private static final String TAG = "AppStartup";
+
+    private static volatile CompletableFuture<Void> ready = CompletableFuture.completedFuture(null);
+
+    // 只在主线程访问
+    private static boolean firstFrameReported;
+    private static boolean interactiveReported;
+
+    /**
+     * 开始启动流程，在Application.onCreate中调用
+     * @param context 上下文
+     * @param preferences 正在后台初始化的加密配置
+     */
+    public static void begin(Context context, CompletableFuture<?> preferences) {
+        Context appContext = context.getApplicationContext();
+        preferences.thenRun(() -> logStage("加密配置就绪"));
+
+        // 在写入线程上打开数据库，完成建表或迁移
+        CompletableFuture<Void> database = CompletableFuture.runAsync(() -> {
+            AppDatabase.getDatabase(appContext).getOpenHelper().getWritableDatabase();
+            logStage("数据库就绪");
+        }, AppExecutors.writer());
+
+        ready = CompletableFuture.allOf(preferences, database);
+    }
+
+    /**
+     * @return 配置和数据库都初始化完成时结束的Future，初始化失败时异常结束
+     */
+    public static CompletableFuture<Void> whenReady() {
+        return ready;
+    }
+
+    /**
+     * 记录首帧耗时，在启动页setContentView之后调用
+     */
+    public static void reportFirstFrame(Activity activity) {
+        if (firstFrameReported) {
+            return;
+        }
+        firstFrameReported = true;
+        onNextDraw(activity, () -> logStage("首帧"));
+    }
+
+    /**
+     * 记录可交互耗时，在启动页之后的第一个界面内容可操作时调用，下一帧绘制时记录：
+     * 有笔记列表的界面在列表首次加载完成后调用，没有列表的界面（登录页、设置页）在setContentView之后调用
+     */
+    public static void reportInteractive(Activity activity) {
+        if (interactiveReported) {
+            return;
+        }
+        interactiveReported = true;
+        onNextDraw(activity, () -> {
+            logStage("可交互");
+            activity.reportFullyDrawn();
+        });
+    }
+
+    private static void onNextDraw(Activity activity, Runnable action) {
+        View decorView = activity.getWindow().getDecorView();
+        decorView.getViewTreeObserver().addOnPreDrawListener(new ViewTreeObserver.OnPreDrawListener() {
+            @Override
+            public boolean onPreDraw() {
+                decorView.getViewTreeObserver().removeOnPreDrawListener(this);
+                action.run();
+                return true;
+            }
+        });
+    }
+
+    private static void logStage(String stage) {
+        long elapsed = SystemClock.uptimeMillis() - Process.getStartUptimeMillis();
+        Log.i(TAG, stage + ": " + elapsed + "ms");
+    }
+}
@@ -0,0 +1,245 @@
+package cn.younglee.goodsticks.utils;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.util.Base64;
+import android.util.Log;
+import android.util.LruCache;
+
+import androidx.security.crypto.EncryptedFile;
+import androidx.security.crypto.MasterKey;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import cn.younglee.goodsticks.GoodSticksApplication;
+
+/**
+ * 用户头像存储
+ * 头像以加密文件保存在应用私有目录，解码后的位图缓存在内存中。
+ * 旧版本把Base64编码的头像存放在加密SharedPreferences的avatar_<userId>键中，每次启动读取配置都要解密整段头像数据，
+ * 这里在首次访问时把它们迁移为文件并删除原键
+ */
+public class AvatarStore {
+    private static final String TAG = "AvatarStore";
+
+    private static final String AVATAR_DIR = "avatars";
+    private static final String PENDING_DIR = "pending";
+    private static final String LEGACY_KEY_PREFIX = "avatar_";
+
+    // 位图缓存的大小，字节
+    private static final int CACHE_BYTES = 4 * 1024 * 1024;
+
+    private static final LruCache<Long, Bitmap> cache = new LruCache<Long, Bitmap>(CACHE_BYTES) {
+        @Override
+        protected int sizeOf(Long key, Bitmap value) {
+            return value.getByteCount();
+        }
+    };
+
+    private static MasterKey masterKey;
+
+    /**
+     * 读取头像数据
+     * @return JPEG数据，没有头像时返回null
+     */
+    public static synchronized byte[] read(Context context, long userId) throws IOException {
+        File file = fileFor(context, userId);
+        if (!file.exists()) {
+            return migrateLegacy(context, userId);
+        }
+
+        try (InputStream in = encryptedFile(context, file).openFileInput()) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream((int) file.length());
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        }
+    }
+
+    /**
+     * 保存头像数据，替换原有头像
+     * @param bytes JPEG数据
+     */
+    public static synchronized void write(Context context, long userId, byte[] bytes) throws IOException {
+        File file = fileFor(context, userId);
+        File dir = file.getParentFile();
+        if (dir != null && !dir.exists() && !dir.mkdirs()) {
+            throw new IOException("无法创建头像目录");
+        }
+        // EncryptedFile只以文件名（不含目录）作为附加认证数据，先在临时目录写入同名文件，
+        // 再重命名覆盖原文件，写入中断时原头像保持完整
+        File pendingDir = new File(dir, PENDING_DIR);
+        if (!pendingDir.exists() && !pendingDir.mkdirs()) {
+            throw new IOException("无法创建头像目录");
+        }
+        File pending = new File(pendingDir, file.getName());
+        // EncryptedFile不能覆盖已有文件，删除上次中断留下的临时文件
+        if (pending.exists() && !pending.delete()) {
+            throw new IOException("无法替换头像文件");
+        }
+
+        try (OutputStream out = encryptedFile(context, pending).openFileOutput()) {
+            out.write(bytes);
+        } catch (IOException e) {
+            pending.delete();
+            throw e;
+        }
+        if (!pending.renameTo(file)) {
+            pending.delete();
+            throw new IOException("无法替换头像文件");
+        }
+        cache.remove(userId);
+    }
+
+    /**
+     * 获取已缓存的头像位图，不访问磁盘，可在主线程调用
+     */
+    public static Bitmap getCachedBitmap(long userId) {
+        return cache.get(userId);
+    }
+
+    /**
+     * 在后台读取并解码头像
+     * @return 头像位图，没有头像或读取失败时为null
+     */
+    public static CompletableFuture<Bitmap> loadBitmap(Context context, long userId) {
+        Context appContext = context.getApplicationContext();
+        return CompletableFuture.supplyAsync(() -> {
+            Bitmap cached = cache.get(userId);
+            if (cached != null) {
+                return cached;
+            }
+            try {
+                byte[] bytes = read(appContext, userId);
+                if (bytes == null) {
+                    return null;
+                }
+                Bitmap bitmap = BitmapFactory.decodeByteArray(bytes, 0, bytes.length);
+                if (bitmap != null) {
+                    cache.put(userId, bitmap);
+                }
+                return bitmap;
+            } catch (IOException e) {
+                Log.e(TAG, "读取头像失败", e);
+                return null;
+            }
+        }, AppExecutors.io());
+    }
+
+    /**
+     * 更新头像位图缓存，保存新头像后调用，避免重新解码
+     */
+    public static void putCachedBitmap(long userId, Bitmap bitmap) {
+        cache.put(userId, bitmap);
+    }
+
+    /**
+     * 读取Base64编码的头像，格式与旧版本保存在配置中的相同，用于备份
+     * @return Base64字符串，没有头像时返回空字符串
+     */
+    public static String readBase64(Context context, long userId) throws IOException {
+        byte[] bytes = read(context, userId);
+        return bytes != null ? Base64.encodeToString(bytes, Base64.DEFAULT) : "";
+    }
+
+    /**
+     * 保存Base64编码的头像，用于从备份恢复
+     */
+    public static void writeBase64(Context context, long userId, String base64) throws IOException {
+        byte[] bytes;
+        try {
+            bytes = Base64.decode(base64, Base64.DEFAULT);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("头像数据无效", e);
+        }
+        write(context, userId, bytes);
+    }
+
+    /**
+     * 把配置中所有旧格式的头像迁移为文件
+     */
+    public static void migrateAll(Context context) {
+        Context appContext = context.getApplicationContext();
+        AppExecutors.background().execute(() -> {
+            SharedPreferences prefs = GoodSticksApplication.getInstance().getSecureSharedPreferences();
+            List<Long> userIds = new ArrayList<>();
+            for (String key : prefs.getAll().keySet()) {
+                if (key.startsWith(LEGACY_KEY_PREFIX)) {
+                    try {
+                        userIds.add(Long.parseLong(key.substring(LEGACY_KEY_PREFIX.length())));
+                    } catch (NumberFormatException ignored) {
+                        // 不是头像键
+                    }
+                }
+            }
+
+            for (long userId : userIds) {
+                try {
+                    synchronized (AvatarStore.class) {
+                        if (!fileFor(appContext, userId).exists()) {
+                            migrateLegacy(appContext, userId);
+                        }
+                    }
+                } catch (IOException e) {
+                    Log.e(TAG, "迁移头像失败: " + userId, e);
+                }
+            }
+        });
+    }
+
+    /**
+     * 迁移单个用户的旧格式头像
+     * @return 迁移的头像数据，没有旧数据时返回null
+     */
+    private static byte[] migrateLegacy(Context context, long userId) throws IOException {
+        SharedPreferences prefs = GoodSticksApplication.getInstance().getSecureSharedPreferences();
+        String key = LEGACY_KEY_PREFIX + userId;
+        String base64 = prefs.getString(key, "");
+        if (base64.isEmpty()) {
+            return null;
+        }
+
+        byte[] bytes;
+        try {
+            bytes = Base64.decode(base64, Base64.DEFAULT);
+        } catch (IllegalArgumentException e) {
+            // 无法解码的旧数据直接丢弃
+            prefs.edit().remove(key).apply();
+            return null;
+        }
+        write(context, userId, bytes);
+        prefs.edit().remove(key).apply();
+        return bytes;
+    }
+
+    private static File fileFor(Context context, long userId) {
+        return new File(new File(context.getFilesDir(), AVATAR_DIR), "avatar_" + userId);
+    }
+
+    private static EncryptedFile encryptedFile(Context context, File file) throws IOException {
+        try {
+            if (masterKey == null) {
+                masterKey = new MasterKey.Builder(context)
+                        .setKeyScheme(MasterKey.KeyScheme.AES256_GCM)
+                        .build();
+            }
+            return new EncryptedFile.Builder(context, file, masterKey,
+                    EncryptedFile.FileEncryptionScheme.AES256_GCM_HKDF_4KB).build();
+        } catch (GeneralSecurityException e) {
+            throw new IOException("无法打开加密文件", e);
+        }
+    }
+}
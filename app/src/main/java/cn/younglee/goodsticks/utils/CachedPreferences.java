@@ -0,0 +1,344 @@
+package cn.younglee.goodsticks.utils;
+
+import android.content.SharedPreferences;
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * 加密配置的内存缓存
+ * EncryptedSharedPreferences每次读取都要加密键名、解密值，而主题、登录状态等配置在每个界面启动时都会读取。
+ * 这里在创建时一次性解密全部配置，保存为不可变的快照，读取直接访问快照；
+ * 修改立即生效于快照并通知监听器，再由单独的写入线程合并后写回底层存储。
+ * apply的修改以底层的apply写回，由系统在界面停止时等待写入完成；界面全部隐藏时调用awaitPendingWrites，
+ * 保证排队中尚未交给底层存储的修改在进程被回收前写入磁盘。
+ */
+public class CachedPreferences implements SharedPreferences {
+
+    // 待写入修改中表示删除的值
+    private static final Object REMOVED = new Object();
+
+    private final SharedPreferences delegate;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Object lock = new Object();
+
+    private volatile Map<String, Object> snapshot;
+
+    // 尚未写回底层存储的修改，由lock保护
+    private final Map<String, Object> pending = new HashMap<>();
+    private boolean pendingClear;
+    private boolean flushScheduled;
+
+    // 与SharedPreferences相同，监听器以弱引用保存
+    private final WeakHashMap<OnSharedPreferenceChangeListener, Object> listeners = new WeakHashMap<>();
+
+    /**
+     * @param delegate 底层存储，创建时读取其全部内容
+     */
+    public CachedPreferences(SharedPreferences delegate) {
+        this.delegate = delegate;
+        Map<String, Object> values = new HashMap<>();
+        for (Map.Entry<String, ?> entry : delegate.getAll().entrySet()) {
+            values.put(entry.getKey(), copyValue(entry.getValue()));
+        }
+        this.snapshot = Collections.unmodifiableMap(values);
+    }
+
+    @Override
+    public Map<String, ?> getAll() {
+        return new HashMap<>(snapshot);
+    }
+
+    @Nullable
+    @Override
+    public String getString(String key, @Nullable String defValue) {
+        Object value = snapshot.get(key);
+        return value != null ? (String) value : defValue;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Nullable
+    @Override
+    public Set<String> getStringSet(String key, @Nullable Set<String> defValues) {
+        Object value = snapshot.get(key);
+        return value != null ? (Set<String>) value : defValues;
+    }
+
+    @Override
+    public int getInt(String key, int defValue) {
+        Object value = snapshot.get(key);
+        return value != null ? (Integer) value : defValue;
+    }
+
+    @Override
+    public long getLong(String key, long defValue) {
+        Object value = snapshot.get(key);
+        return value != null ? (Long) value : defValue;
+    }
+
+    @Override
+    public float getFloat(String key, float defValue) {
+        Object value = snapshot.get(key);
+        return value != null ? (Float) value : defValue;
+    }
+
+    @Override
+    public boolean getBoolean(String key, boolean defValue) {
+        Object value = snapshot.get(key);
+        return value != null ? (Boolean) value : defValue;
+    }
+
+    @Override
+    public boolean contains(String key) {
+        return snapshot.containsKey(key);
+    }
+
+    @Override
+    public Editor edit() {
+        return new CachedEditor();
+    }
+
+    @Override
+    public void registerOnSharedPreferenceChangeListener(OnSharedPreferenceChangeListener listener) {
+        synchronized (lock) {
+            listeners.put(listener, this);
+        }
+    }
+
+    @Override
+    public void unregisterOnSharedPreferenceChangeListener(OnSharedPreferenceChangeListener listener) {
+        synchronized (lock) {
+            listeners.remove(listener);
+        }
+    }
+
+    /**
+     * 更新快照并记录待写入的修改
+     * @return 值发生变化的键
+     */
+    private List<String> applyToSnapshot(Map<String, Object> changes, boolean clear) {
+        List<String> changedKeys = new ArrayList<>();
+        synchronized (lock) {
+            Map<String, Object> current = snapshot;
+            Map<String, Object> next = clear ? new HashMap<>() : new HashMap<>(current);
+            if (clear) {
+                changedKeys.addAll(current.keySet());
+                pending.clear();
+                pendingClear = true;
+            }
+
+            for (Map.Entry<String, Object> entry : changes.entrySet()) {
+                String key = entry.getKey();
+                Object value = entry.getValue();
+                if (value == REMOVED) {
+                    next.remove(key);
+                } else {
+                    next.put(key, value);
+                }
+                pending.put(key, value);
+                if (!Objects.equals(current.get(key), next.get(key)) && !changedKeys.contains(key)) {
+                    changedKeys.add(key);
+                }
+            }
+            snapshot = Collections.unmodifiableMap(next);
+        }
+        return changedKeys;
+    }
+
+    /**
+     * 在写入线程上安排一次写回，连续的多次修改合并为一次写入
+     */
+    private void scheduleFlush() {
+        synchronized (lock) {
+            if (flushScheduled) {
+                return;
+            }
+            flushScheduled = true;
+        }
+        AppExecutors.prefsWriter().execute(() -> flush(false));
+    }
+
+    /**
+     * 把排队中的修改同步写入磁盘后返回，在应用界面全部隐藏时调用
+     */
+    public void awaitPendingWrites() {
+        try {
+            AppExecutors.prefsWriter().submit(() -> flush(true)).get();
+        } catch (ExecutionException | InterruptedException e) {
+            // 等待被中断时写入仍会在写入线程上完成
+        }
+    }
+
+    /**
+     * 把待写入的修改写回底层存储，只在写入线程上调用
+     * @param commit 为true时同步写入磁盘并返回结果；为false时以apply交给底层存储，
+     *               写入登记在系统的QueuedWork中，Activity停止时系统会等待其完成
+     */
+    private boolean flush(boolean commit) {
+        Map<String, Object> changes;
+        boolean clear;
+        synchronized (lock) {
+            changes = new HashMap<>(pending);
+            clear = pendingClear;
+            pending.clear();
+            pendingClear = false;
+            flushScheduled = false;
+        }
+        // 同步写入时即使没有新修改也要提交，等待之前以apply交出的写入完成
+        if (changes.isEmpty() && !clear && !commit) {
+            return true;
+        }
+
+        Editor editor = delegate.edit();
+        if (clear) {
+            editor.clear();
+        }
+        for (Map.Entry<String, Object> entry : changes.entrySet()) {
+            putValue(editor, entry.getKey(), entry.getValue());
+        }
+        if (commit) {
+            return editor.commit();
+        }
+        editor.apply();
+        return true;
+    }
+
+    private void notifyListeners(List<String> changedKeys) {
+        if (changedKeys.isEmpty()) {
+            return;
+        }
+        List<OnSharedPreferenceChangeListener> targets;
+        synchronized (lock) {
+            if (listeners.isEmpty()) {
+                return;
+            }
+            targets = new ArrayList<>(listeners.keySet());
+        }
+
+        Runnable dispatch = () -> {
+            for (String key : changedKeys) {
+                for (OnSharedPreferenceChangeListener listener : targets) {
+                    listener.onSharedPreferenceChanged(this, key);
+                }
+            }
+        };
+        if (Looper.myLooper() == Looper.getMainLooper()) {
+            dispatch.run();
+        } else {
+            mainHandler.post(dispatch);
+        }
+    }
+
+    private static Object copyValue(Object value) {
+        if (value instanceof Set) {
+            return Collections.unmodifiableSet(new HashSet<>((Set<?>) value));
+        }
+        return value;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void putValue(Editor editor, String key, Object value) {
+        if (value == REMOVED) {
+            editor.remove(key);
+        } else if (value instanceof String) {
+            editor.putString(key, (String) value);
+        } else if (value instanceof Integer) {
+            editor.putInt(key, (Integer) value);
+        } else if (value instanceof Long) {
+            editor.putLong(key, (Long) value);
+        } else if (value instanceof Float) {
+            editor.putFloat(key, (Float) value);
+        } else if (value instanceof Boolean) {
+            editor.putBoolean(key, (Boolean) value);
+        } else if (value instanceof Set) {
+            editor.putStringSet(key, (Set<String>) value);
+        }
+    }
+
+    /**
+     * 修改先记录在编辑器中，apply或commit时一次性应用到快照
+     */
+    private class CachedEditor implements Editor {
+        private final Map<String, Object> changes = new HashMap<>();
+        private boolean clear;
+
+        @Override
+        public Editor putString(String key, @Nullable String value) {
+            changes.put(key, value != null ? value : REMOVED);
+            return this;
+        }
+
+        @Override
+        public Editor putStringSet(String key, @Nullable Set<String> values) {
+            changes.put(key, values != null ? copyValue(values) : REMOVED);
+            return this;
+        }
+
+        @Override
+        public Editor putInt(String key, int value) {
+            changes.put(key, value);
+            return this;
+        }
+
+        @Override
+        public Editor putLong(String key, long value) {
+            changes.put(key, value);
+            return this;
+        }
+
+        @Override
+        public Editor putFloat(String key, float value) {
+            changes.put(key, value);
+            return this;
+        }
+
+        @Override
+        public Editor putBoolean(String key, boolean value) {
+            changes.put(key, value);
+            return this;
+        }
+
+        @Override
+        public Editor remove(String key) {
+            changes.put(key, REMOVED);
+            return this;
+        }
+
+        @Override
+        public Editor clear() {
+            clear = true;
+            return this;
+        }
+
+        @Override
+        public void apply() {
+            List<String> changedKeys = applyToSnapshot(changes, clear);
+            scheduleFlush();
+            notifyListeners(changedKeys);
+        }
+
+        @Override
+        public boolean commit() {
+            List<String> changedKeys = applyToSnapshot(changes, clear);
+            notifyListeners(changedKeys);
+            try {
+                // 与之前排队的修改一起写回，写入完成后返回
+                return AppExecutors.prefsWriter().submit(() -> flush(true)).get();
+            } catch (ExecutionException | InterruptedException e) {
+                return false;
+            }
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package cn.younglee.goodsticks.utils;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * 笔记内容指纹工具类
+ * 用64位FNV-1a哈希概括标题、正文和图片路径，列表比较内容是否变化时只需比较一个long，
+ * 不必逐字符比较全文。需要抗碰撞的场景（图片文件名、备份中的头像摘要）使用SHA-256
+ */
+public class ContentHash {
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    /**
+     * 计算笔记的内容指纹
+     * @param title 标题
+     * @param content 内容
+     * @param imagePath 图片路径
+     * @return 64位哈希值
+     */
+    public static long of(String title, String content, String imagePath) {
+        long hash = FNV_OFFSET_BASIS;
+        hash = update(hash, title);
+        hash = update(hash, content);
+        hash = update(hash, imagePath);
+        return hash;
+    }
+
+    private static long update(long hash, String text) {
+        if (text == null) {
+            // null与空字符串区分开
+            return (hash ^ 0xff) * FNV_PRIME;
+        }
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            hash = (hash ^ (c & 0xff)) * FNV_PRIME;
+            hash = (hash ^ (c >>> 8)) * FNV_PRIME;
+        }
+        // 字段之间的分隔，避免"ab"+"c"与"a"+"bc"相同
+        return (hash ^ 0xfe) * FNV_PRIME;
+    }
+
+    /**
+     * 计算SHA-256摘要
+     * @param data 数据
+     * @return 小写十六进制字符串
+     */
+    public static String sha256(byte[] data) {
+        return toHex(newSha256().digest(data));
+    }
+
+    /**
+     * @return 新的SHA-256摘要对象
+     */
+    public static MessageDigest newSha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // 所有Android版本都支持SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 转换为小写十六进制字符串
+     */
+    public static String toHex(byte[] bytes) {
+        StringBuilder builder = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            builder.append(Character.forDigit((b >> 4) & 0xf, 16));
+            builder.append(Character.forDigit(b & 0xf, 16));
+        }
+        return builder.toString();
+    }
+}
@@ -40,18 +40,17 @@ public class DataMigrationUtil {
         
         // 执行数据库操作，将无用户ID的笔记关联到当前用户
         AppDatabase db = AppDatabase.getDatabase(context);
-        AppDatabase.databaseWriteExecutor.execute(() -> {
+        // 与其他数据库写入一样在写入线程执行，避免与笔记的写入事务争用写锁
+        AppExecutors.writer().execute(() -> {
             try {
-                // 执行SQL更新操作
-                String sql = "UPDATE notes SET user_id = " + userId + " WHERE user_id = -1 OR user_id IS NULL";
-                db.getOpenHelper().getWritableDatabase().execSQL(sql);
+                int migrated = db.noteDao().assignOrphanNotesToUser(userId);
                 
                 // 标记迁移已完成
                 prefs.edit().putBoolean(MIGRATION_DONE_KEY, true).apply();
                 
-                            Log.i(TAG, "记事本数据迁移完成，关联到用户ID: " + userId);
-        } catch (Exception e) {
-            Log.e(TAG, "记事本数据迁移失败", e);
+                Log.i(TAG, "记事本数据迁移完成，关联到用户ID: " + userId + "，共" + migrated + "条");
+            } catch (Exception e) {
+                Log.e(TAG, "记事本数据迁移失败", e);
             }
         });
     }
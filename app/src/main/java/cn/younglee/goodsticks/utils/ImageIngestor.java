@@ -0,0 +1,158 @@
+package cn.younglee.goodsticks.utils;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Matrix;
+import android.net.Uri;
+import android.os.Build;
+
+import androidx.exifinterface.media.ExifInterface;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * 笔记图片导入工具类
+ * 拍照或从相册选择的原图通常有上千万像素，这里在导入时按inSampleSize降采样解码，按EXIF方向旋转，
+ * 缩放到不超过MAX_DIMENSION后重新压缩存入ImageStore，之后的列表、编辑页和备份都只需处理这张小图。
+ * 解码和压缩耗时较长，只能在后台线程调用
+ */
+public class ImageIngestor {
+
+    // 保存后图片最长边的像素数
+    private static final int MAX_DIMENSION = 1600;
+    private static final int QUALITY = 85;
+
+    /**
+     * 导入图片
+     * @param context 上下文
+     * @param source 图片来源，相机拍摄的文件或相册返回的content URI
+     * @return 保存后的图片绝对路径
+     * @throws IOException 无法读取或保存图片
+     */
+    public static String ingest(Context context, Uri source) throws IOException {
+        ContentResolver resolver = context.getContentResolver();
+
+        // 只读取尺寸
+        BitmapFactory.Options bounds = new BitmapFactory.Options();
+        bounds.inJustDecodeBounds = true;
+        try (InputStream in = open(resolver, source)) {
+            BitmapFactory.decodeStream(in, null, bounds);
+        }
+        if (bounds.outWidth <= 0 || bounds.outHeight <= 0) {
+            throw new IOException("无法识别的图片格式");
+        }
+
+        // 按2的幂降采样，解码结果的最长边不小于MAX_DIMENSION
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inSampleSize = sampleSizeFor(bounds.outWidth, bounds.outHeight);
+        Bitmap decoded;
+        try (InputStream in = open(resolver, source)) {
+            decoded = BitmapFactory.decodeStream(in, null, options);
+        }
+        if (decoded == null) {
+            throw new IOException("图片解码失败");
+        }
+
+        int orientation;
+        try (InputStream in = open(resolver, source)) {
+            orientation = new ExifInterface(in).getAttributeInt(
+                    ExifInterface.TAG_ORIENTATION, ExifInterface.ORIENTATION_NORMAL);
+        }
+
+        Bitmap result = transform(decoded, orientation);
+        try {
+            return save(context, result);
+        } finally {
+            if (result != decoded) {
+                result.recycle();
+            }
+            decoded.recycle();
+        }
+    }
+
+    private static InputStream open(ContentResolver resolver, Uri source) throws IOException {
+        InputStream in = resolver.openInputStream(source);
+        if (in == null) {
+            throw new IOException("无法打开图片：" + source);
+        }
+        return in;
+    }
+
+    private static int sampleSizeFor(int width, int height) {
+        int longest = Math.max(width, height);
+        int sampleSize = 1;
+        while (longest / (sampleSize * 2) >= MAX_DIMENSION) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+
+    /**
+     * 缩放到不超过MAX_DIMENSION，并按EXIF方向旋转或翻转
+     */
+    private static Bitmap transform(Bitmap bitmap, int orientation) {
+        Matrix matrix = new Matrix();
+        int longest = Math.max(bitmap.getWidth(), bitmap.getHeight());
+        if (longest > MAX_DIMENSION) {
+            float scale = (float) MAX_DIMENSION / longest;
+            matrix.postScale(scale, scale);
+        }
+
+        switch (orientation) {
+            case ExifInterface.ORIENTATION_FLIP_HORIZONTAL:
+                matrix.postScale(-1, 1);
+                break;
+            case ExifInterface.ORIENTATION_ROTATE_180:
+                matrix.postRotate(180);
+                break;
+            case ExifInterface.ORIENTATION_FLIP_VERTICAL:
+                matrix.postScale(1, -1);
+                break;
+            case ExifInterface.ORIENTATION_TRANSPOSE:
+                matrix.postRotate(90);
+                matrix.postScale(-1, 1);
+                break;
+            case ExifInterface.ORIENTATION_ROTATE_90:
+                matrix.postRotate(90);
+                break;
+            case ExifInterface.ORIENTATION_TRANSVERSE:
+                matrix.postRotate(-90);
+                matrix.postScale(-1, 1);
+                break;
+            case ExifInterface.ORIENTATION_ROTATE_270:
+                matrix.postRotate(-90);
+                break;
+            default:
+                break;
+        }
+
+        if (matrix.isIdentity()) {
+            return bitmap;
+        }
+        return Bitmap.createBitmap(bitmap, 0, 0, bitmap.getWidth(), bitmap.getHeight(), matrix, true);
+    }
+
+    /**
+     * 压缩后存入ImageStore，相同的图片只保存一份
+     */
+    private static String save(Context context, Bitmap bitmap) throws IOException {
+        Bitmap.CompressFormat format;
+        String extension;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R) {
+            format = Bitmap.CompressFormat.WEBP_LOSSY;
+            extension = ".webp";
+        } else {
+            format = Bitmap.CompressFormat.JPEG;
+            extension = ".jpg";
+        }
+
+        return ImageStore.put(context, extension, out -> {
+            if (!bitmap.compress(format, QUALITY, out)) {
+                throw new IOException("图片压缩失败");
+            }
+        });
+    }
+}
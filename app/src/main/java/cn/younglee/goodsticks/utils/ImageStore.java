@@ -0,0 +1,173 @@
+package cn.younglee.goodsticks.utils;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Environment;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.util.Locale;
+import java.util.Set;
+
+import cn.younglee.goodsticks.GoodSticksApplication;
+import cn.younglee.goodsticks.data.repository.NoteRepository;
+
+/**
+ * 笔记图片存储
+ * 图片按内容的SHA-256命名保存在应用私有目录，相同的图片只保存一份，多条笔记可以引用同一个文件。
+ * 笔记的image_path即为对图片的引用，后台清理时删除没有任何笔记引用的文件
+ */
+public class ImageStore {
+    private static final String TAG = "ImageStore";
+
+    private static final String IMAGE_DIR = "images";
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    // 新写入或刚被复用的文件在该时间内不会被清理，编辑中尚未保存的笔记可能正在引用它们
+    private static final long GRACE_MILLIS = 24 * 60 * 60 * 1000L;
+
+    // 两次清理的最小间隔
+    private static final long GC_INTERVAL_MILLIS = 24 * 60 * 60 * 1000L;
+    private static final String PREFS_NAME = "image_store";
+    private static final String KEY_LAST_GC = "last_gc";
+
+    // 保存时的复用或重命名与清理时的检查和删除互斥
+    private static final Object LOCK = new Object();
+
+    /**
+     * 向输出流写入图片数据
+     */
+    public interface BlobWriter {
+        void write(OutputStream out) throws IOException;
+    }
+
+    /**
+     * 清理结果统计
+     */
+    public static class GcStats {
+        public int scannedFiles;
+        public int deletedFiles;
+        public long reclaimedBytes;
+        public long retainedBytes;
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "scanned=%d deleted=%d reclaimed=%dKB retained=%dKB",
+                    scannedFiles, deletedFiles, reclaimedBytes / 1024, retainedBytes / 1024);
+        }
+    }
+
+    public static File getDirectory(Context context) {
+        return new File(context.getFilesDir(), IMAGE_DIR);
+    }
+
+    /**
+     * 保存图片，内容相同的图片已存在时直接复用
+     * @param context 上下文
+     * @param extension 文件扩展名，如".webp"
+     * @param writer 写入图片数据
+     * @return 图片的绝对路径
+     * @throws IOException 保存失败
+     */
+    public static String put(Context context, String extension, BlobWriter writer) throws IOException {
+        File dir = getDirectory(context);
+        if (!dir.exists() && !dir.mkdirs()) {
+            throw new IOException("无法创建图片目录");
+        }
+
+        MessageDigest digest = ContentHash.newSha256();
+
+        // 先写临时文件，边写边计算哈希
+        File temp = File.createTempFile("blob", TEMP_SUFFIX, dir);
+        try (OutputStream out = new DigestOutputStream(new FileOutputStream(temp), digest)) {
+            writer.write(out);
+        } catch (IOException e) {
+            temp.delete();
+            throw e;
+        }
+
+        File target = new File(dir, ContentHash.toHex(digest.digest()) + extension);
+        synchronized (LOCK) {
+            if (target.exists()) {
+                // 已有相同内容的图片，复用并刷新修改时间，避免被清理
+                temp.delete();
+                target.setLastModified(System.currentTimeMillis());
+            } else if (!temp.renameTo(target)) {
+                temp.delete();
+                throw new IOException("保存图片失败");
+            }
+        }
+        return target.getAbsolutePath();
+    }
+
+    /**
+     * 距上次清理超过一天时，在后台清理没有笔记引用的图片
+     */
+    public static void scheduleGarbageCollection(Context context) {
+        Context appContext = context.getApplicationContext();
+        SharedPreferences prefs = appContext.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        long now = System.currentTimeMillis();
+        if (now - prefs.getLong(KEY_LAST_GC, 0) < GC_INTERVAL_MILLIS) {
+            return;
+        }
+
+        AppExecutors.background().execute(() -> {
+            Set<String> referenced = new NoteRepository(GoodSticksApplication.getInstance())
+                    .getReferencedImagePathsSync();
+            if (referenced == null) {
+                // 无法确定引用关系时不删除任何文件
+                return;
+            }
+            GcStats stats = collectGarbage(appContext, referenced, now);
+            prefs.edit().putLong(KEY_LAST_GC, now).apply();
+            Log.i(TAG, "图片清理完成: " + stats);
+        });
+    }
+
+    /**
+     * 删除没有笔记引用的图片
+     * 同时清理旧版本拍照留下的原图，以及写入中断残留的临时文件
+     * @param context 上下文
+     * @param referenced 所有笔记引用的图片路径
+     * @param now 当前时间，修改时间在宽限期内的文件保留
+     * @return 清理统计
+     */
+    public static GcStats collectGarbage(Context context, Set<String> referenced, long now) {
+        GcStats stats = new GcStats();
+        sweep(getDirectory(context), referenced, now, stats);
+        sweep(context.getExternalFilesDir(Environment.DIRECTORY_PICTURES), referenced, now, stats);
+        return stats;
+    }
+
+    private static void sweep(File dir, Set<String> referenced, long now, GcStats stats) {
+        File[] files = dir != null ? dir.listFiles() : null;
+        if (files == null) {
+            return;
+        }
+
+        for (File file : files) {
+            if (!file.isFile()) {
+                continue;
+            }
+            stats.scannedFiles++;
+            long length = file.length();
+            boolean unreferenced = !referenced.contains(file.getAbsolutePath());
+            boolean deleted;
+            synchronized (LOCK) {
+                // 与put互斥，检查修改时间后、删除前复用的图片不会被删除
+                deleted = unreferenced && now - file.lastModified() > GRACE_MILLIS && file.delete();
+            }
+            if (deleted) {
+                stats.deletedFiles++;
+                stats.reclaimedBytes += length;
+            } else {
+                stats.retainedBytes += length;
+            }
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package cn.younglee.goodsticks.utils;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 搜索结果相关度计算工具类
+ * FTS4没有内置bm25()，这里根据matchinfo(notes_fts, 'pcnalx')返回的统计信息用Java计算BM25分数。
+ * matchinfo的内容依次为：短语数p、列数c、总行数n、各列平均词数a[c]、当前行各列词数l[c]，
+ * 以及每个短语在每列的{当前行命中次数, 所有行命中次数, 命中的行数}。
+ */
+public class SearchRanker {
+
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    /**
+     * 计算一条命中记录的BM25分数
+     * @param matchInfo matchinfo(notes_fts, 'pcnalx')的返回值
+     * @return 分数，越大越相关
+     */
+    public static double bm25(byte[] matchInfo) {
+        if (matchInfo == null || matchInfo.length < 12) {
+            return 0;
+        }
+
+        // matchinfo按本机字节序输出32位无符号整数
+        IntBuffer ints = ByteBuffer.wrap(matchInfo).order(ByteOrder.nativeOrder()).asIntBuffer();
+        int phraseCount = ints.get(0);
+        int columnCount = ints.get(1);
+        long rowCount = ints.get(2) & 0xffffffffL;
+        int averageOffset = 3;
+        int lengthOffset = averageOffset + columnCount;
+        int hitsOffset = lengthOffset + columnCount;
+        if (ints.limit() < hitsOffset + 3 * phraseCount * columnCount) {
+            return 0;
+        }
+
+        double score = 0;
+        for (int phrase = 0; phrase < phraseCount; phrase++) {
+            for (int column = 0; column < columnCount; column++) {
+                int base = hitsOffset + 3 * (phrase * columnCount + column);
+                long termFrequency = ints.get(base) & 0xffffffffL;
+                long documentFrequency = ints.get(base + 2) & 0xffffffffL;
+                if (termFrequency == 0) {
+                    continue;
+                }
+
+                double averageLength = Math.max(1, ints.get(averageOffset + column) & 0xffffffffL);
+                double length = ints.get(lengthOffset + column) & 0xffffffffL;
+                double idf = Math.log((rowCount - documentFrequency + 0.5) / (documentFrequency + 0.5) + 1);
+                score += idf * termFrequency * (K1 + 1)
+                        / (termFrequency + K1 * (1 - B + B * length / averageLength));
+            }
+        }
+        return score;
+    }
+
+    /**
+     * 计算搜索词与文本中最接近的片段的相似度，用于容错搜索的重排序
+     * 使用允许从任意位置开始匹配的编辑距离，时间与两者长度的乘积成正比，只应对候选结果的短文本调用
+     * @param pattern 规范化后的搜索词
+     * @param text 规范化后的文本
+     * @return 0到1之间的相似度，1表示文本中包含完全相同的片段
+     */
+    public static double similarity(String pattern, String text) {
+        if (pattern == null || pattern.isEmpty() || text == null || text.isEmpty()) {
+            return 0;
+        }
+
+        int[] p = pattern.codePoints().toArray();
+        int[] previous = new int[p.length + 1];
+        int[] current = new int[p.length + 1];
+        for (int i = 0; i <= p.length; i++) {
+            previous[i] = i;
+        }
+
+        int best = p.length;
+        int j = 0;
+        while (j < text.length()) {
+            int t = text.codePointAt(j);
+            j += Character.charCount(t);
+
+            // 第0列为0，片段可以从文本的任意位置开始
+            current[0] = 0;
+            for (int i = 1; i <= p.length; i++) {
+                int cost = p[i - 1] == t ? 0 : 1;
+                current[i] = Math.min(previous[i - 1] + cost, Math.min(previous[i] + 1, current[i - 1] + 1));
+            }
+            best = Math.min(best, current[p.length]);
+
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return 1 - (double) best / p.length;
+    }
+
+    /**
+     * 查找搜索词在文本中第一次出现的位置，忽略大小写
+     * 逐字符比较，不改变文本长度，返回的位置可以直接用于截取原文
+     * @param text 文本
+     * @param term 搜索词
+     * @return 起始位置，没有出现时返回-1
+     */
+    public static int indexOfIgnoreCase(String text, String term) {
+        if (term == null || term.isEmpty()) {
+            return 0;
+        }
+        for (int i = 0; i + term.length() <= text.length(); i++) {
+            if (text.regionMatches(true, i, term, 0, term.length())) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 查找文本中各搜索词出现的位置，忽略大小写
+     * @param text 需要高亮的文本，通常为标题或摘要等短文本
+     * @param terms 搜索词
+     * @return 按起始位置排列、互不重叠的{起始, 结束}区间
+     */
+    public static List<int[]> findHighlights(String text, List<String> terms) {
+        List<int[]> ranges = new ArrayList<>();
+        if (text == null || text.isEmpty() || terms.isEmpty()) {
+            return ranges;
+        }
+
+        int i = 0;
+        while (i < text.length()) {
+            int matchedLength = 0;
+            for (String term : terms) {
+                if (term.length() > matchedLength && text.regionMatches(true, i, term, 0, term.length())) {
+                    matchedLength = term.length();
+                }
+            }
+
+            if (matchedLength > 0) {
+                ranges.add(new int[]{i, i + matchedLength});
+                i += matchedLength;
+            } else {
+                i++;
+            }
+        }
+        return ranges;
+    }
+}
@@ -0,0 +1,308 @@
+package cn.younglee.goodsticks.utils;
+
+import com.github.promeg.pinyinhelper.Pinyin;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * 搜索分词工具类
+ * SQLite自带的simple/porter分词器不会切分中文，一整段中文会被当成一个词，
+ * 因此在写入时用Java把中日韩文字切成二元组(bigram)，存入search_text列交给FTS索引。
+ * 例如"备忘录"会被切成"备忘 忘录 录"，查询"忘录"时即可命中索引。
+ * 标题另外生成全拼和首字母索引，输入"bwl"或"beiwang"也可以命中"备忘录"。
+ */
+public class SearchTokenizer {
+
+    // 拼音后缀的数量与每段汉字数的平方成正比，过长的标题分段处理
+    private static final int MAX_PINYIN_RUN = 16;
+
+    // 三元组索引只取标题和正文的前TRIGRAM_TEXT_LIMIT个字符，限制每条笔记的索引行数
+    private static final int TRIGRAM_TEXT_LIMIT = 1000;
+
+    /**
+     * 生成写入search_text列的索引文本
+     * @param title 标题
+     * @param content 内容
+     * @return 以空格分隔的词序列
+     */
+    public static String buildIndexText(String title, String content) {
+        StringBuilder builder = new StringBuilder();
+        appendTokens(builder, title);
+        appendTokens(builder, content);
+        return builder.toString();
+    }
+
+    /**
+     * 生成标题的全拼索引文本
+     * 每段连续汉字输出从每个字开始到段尾的拼音后缀，例如"备忘录"输出"beiwanglu wanglu lu"，
+     * 前缀查询"beiwang"、"wanglu"都可以命中索引
+     * @param title 标题
+     * @return 以空格分隔的拼音后缀
+     */
+    public static String buildPinyinText(String title) {
+        return buildPinyinSuffixes(title, false);
+    }
+
+    /**
+     * 生成标题的首字母索引文本，例如"备忘录"输出"bwl wl l"
+     * @param title 标题
+     * @return 以空格分隔的首字母后缀
+     */
+    public static String buildInitialsText(String title) {
+        return buildPinyinSuffixes(title, true);
+    }
+
+    /**
+     * 将用户输入转换为FTS4 MATCH表达式
+     * 连续的中文转换为二元组短语查询，单个汉字和英文数字按前缀匹配，各部分之间为AND关系
+     * @param searchQuery 用户输入的搜索词
+     * @return MATCH表达式，没有有效词时返回空字符串
+     */
+    public static String buildMatchQuery(String searchQuery) {
+        StringBuilder builder = new StringBuilder();
+        if (searchQuery == null) {
+            return "";
+        }
+
+        for (Segment segment : split(searchQuery)) {
+            if (builder.length() > 0) {
+                builder.append(' ');
+            }
+
+            String text = segment.text;
+            if (segment.cjk && text.codePointCount(0, text.length()) > 1) {
+                // 相邻二元组组成短语，等价于子串匹配
+                builder.append('"');
+                appendBigrams(builder, text, false);
+                builder.append('"');
+            } else {
+                builder.append(text).append('*');
+            }
+        }
+        return builder.toString();
+    }
+
+    /**
+     * 提取用户输入中的搜索词，用于结果高亮和定位摘要
+     * @param searchQuery 用户输入的搜索词
+     * @return 小写的中文段和字母数字段
+     */
+    public static List<String> extractTerms(String searchQuery) {
+        List<String> terms = new ArrayList<>();
+        if (searchQuery == null) {
+            return terms;
+        }
+        for (Segment segment : split(searchQuery)) {
+            terms.add(segment.text);
+        }
+        return terms;
+    }
+
+    /**
+     * 生成笔记的三字符片段，用于容错搜索的候选索引
+     * @param title 标题
+     * @param content 内容
+     * @return 去重后的片段
+     */
+    public static Set<String> buildTrigrams(String title, String content) {
+        StringBuilder text = new StringBuilder();
+        appendNormalized(text, title, TRIGRAM_TEXT_LIMIT);
+        appendNormalized(text, content, TRIGRAM_TEXT_LIMIT);
+        return trigrams(text.toString());
+    }
+
+    /**
+     * 生成搜索词的三字符片段
+     * @param searchQuery 用户输入的搜索词
+     * @return 去重后的片段，搜索词不足三个字符时为空
+     */
+    public static Set<String> buildQueryTrigrams(String searchQuery) {
+        return trigrams(normalizeForFuzzy(searchQuery));
+    }
+
+    /**
+     * 规范化容错搜索的文本：转为小写，连续的空白和标点替换为一个空格
+     */
+    public static String normalizeForFuzzy(String text) {
+        StringBuilder builder = new StringBuilder();
+        appendNormalized(builder, text, Integer.MAX_VALUE);
+        return builder.toString().trim();
+    }
+
+    private static void appendNormalized(StringBuilder builder, String text, int limit) {
+        if (text == null) {
+            return;
+        }
+
+        int count = 0;
+        int i = 0;
+        while (i < text.length() && count < limit) {
+            int codePoint = text.codePointAt(i);
+            i += Character.charCount(codePoint);
+            count++;
+
+            if (Character.isLetterOrDigit(codePoint)) {
+                builder.appendCodePoint(Character.toLowerCase(codePoint));
+            } else if (builder.length() > 0 && builder.charAt(builder.length() - 1) != ' ') {
+                builder.append(' ');
+            }
+        }
+        if (builder.length() > 0 && builder.charAt(builder.length() - 1) != ' ') {
+            builder.append(' ');
+        }
+    }
+
+    private static Set<String> trigrams(String text) {
+        Set<String> grams = new LinkedHashSet<>();
+        int[] codePoints = text.trim().codePoints().toArray();
+        for (int i = 0; i + 3 <= codePoints.length; i++) {
+            grams.add(new String(codePoints, i, 3));
+        }
+        return grams;
+    }
+
+    private static String buildPinyinSuffixes(String title, boolean initialsOnly) {
+        StringBuilder builder = new StringBuilder();
+        if (title == null || title.isEmpty()) {
+            return "";
+        }
+
+        for (List<String> run : splitHanziRuns(title)) {
+            for (int start = 0; start < run.size(); start++) {
+                if (builder.length() > 0) {
+                    builder.append(' ');
+                }
+                for (int i = start; i < run.size(); i++) {
+                    String syllable = run.get(i);
+                    if (initialsOnly) {
+                        builder.append(syllable.charAt(0));
+                    } else {
+                        builder.append(syllable);
+                    }
+                }
+            }
+        }
+        return builder.toString();
+    }
+
+    /**
+     * 把标题中连续的汉字转换为小写拼音音节序列，每段最多MAX_PINYIN_RUN个字，以限制后缀数量
+     */
+    private static List<List<String>> splitHanziRuns(String text) {
+        List<List<String>> runs = new ArrayList<>();
+        List<String> current = new ArrayList<>();
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Pinyin.isChinese(c) && current.size() < MAX_PINYIN_RUN) {
+                current.add(Pinyin.toPinyin(c).toLowerCase(Locale.ROOT));
+            } else if (!current.isEmpty()) {
+                runs.add(current);
+                current = new ArrayList<>();
+                if (Pinyin.isChinese(c)) {
+                    current.add(Pinyin.toPinyin(c).toLowerCase(Locale.ROOT));
+                }
+            }
+        }
+        if (!current.isEmpty()) {
+            runs.add(current);
+        }
+        return runs;
+    }
+
+    private static void appendTokens(StringBuilder builder, String text) {
+        if (text == null || text.isEmpty()) {
+            return;
+        }
+
+        for (Segment segment : split(text)) {
+            if (builder.length() > 0) {
+                builder.append(' ');
+            }
+            if (segment.cjk) {
+                appendBigrams(builder, segment.text, true);
+            } else {
+                builder.append(segment.text);
+            }
+        }
+    }
+
+    /**
+     * 输出一段连续中文的二元组
+     * @param withTail 是否在末尾追加最后一个字，保证单字前缀查询能命中结尾的字
+     */
+    private static void appendBigrams(StringBuilder builder, String text, boolean withTail) {
+        int[] codePoints = text.codePoints().toArray();
+        if (codePoints.length == 1) {
+            builder.appendCodePoint(codePoints[0]);
+            return;
+        }
+
+        for (int i = 0; i < codePoints.length - 1; i++) {
+            if (i > 0) {
+                builder.append(' ');
+            }
+            builder.appendCodePoint(codePoints[i]).appendCodePoint(codePoints[i + 1]);
+        }
+        if (withTail) {
+            builder.append(' ').appendCodePoint(codePoints[codePoints.length - 1]);
+        }
+    }
+
+    /**
+     * 按字符类别把文本切成中文段和字母数字段，其余字符（空白、标点）作为分隔符丢弃
+     */
+    private static List<Segment> split(String text) {
+        List<Segment> segments = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean currentCjk = false;
+
+        int i = 0;
+        while (i < text.length()) {
+            int codePoint = text.codePointAt(i);
+            i += Character.charCount(codePoint);
+
+            boolean cjk = isCjk(codePoint);
+            if (!cjk && !Character.isLetterOrDigit(codePoint)) {
+                flush(segments, current, currentCjk);
+                continue;
+            }
+
+            if (current.length() > 0 && cjk != currentCjk) {
+                flush(segments, current, currentCjk);
+            }
+            current.appendCodePoint(codePoint);
+            currentCjk = cjk;
+        }
+        flush(segments, current, currentCjk);
+        return segments;
+    }
+
+    private static void flush(List<Segment> segments, StringBuilder current, boolean cjk) {
+        if (current.length() > 0) {
+            segments.add(new Segment(current.toString().toLowerCase(Locale.ROOT), cjk));
+            current.setLength(0);
+        }
+    }
+
+    private static boolean isCjk(int codePoint) {
+        Character.UnicodeScript script = Character.UnicodeScript.of(codePoint);
+        return script == Character.UnicodeScript.HAN
+                || script == Character.UnicodeScript.HIRAGANA
+                || script == Character.UnicodeScript.KATAKANA
+                || script == Character.UnicodeScript.HANGUL;
+    }
+
+    private static class Segment {
+        final String text;
+        final boolean cjk;
+
+        Segment(String text, boolean cjk) {
+            this.text = text;
+            this.cjk = cjk;
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package cn.younglee.goodsticks.utils;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import okhttp3.Authenticator;
+import okhttp3.Challenge;
+import okhttp3.Credentials;
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.Route;
+
+/**
+ * WebDAV的HTTP认证
+ * 作为Authenticator响应服务器的401质询，支持Basic和Digest（qop=auth，MD5/SHA-256）。
+ * 质询成功后按主机记住认证方式，作为拦截器在之后的请求中预先带上认证头：
+ * 流式上传的请求体很大，未带认证头时服务器可能在读完请求体前就返回401并断开连接。
+ * Sardine的请求和流式上传共用同一个实例，两者的认证方式一致
+ */
+public class WebDavAuthenticator implements Authenticator, Interceptor {
+    private static final String AUTHORIZATION = "Authorization";
+
+    private final String username;
+    private final String password;
+    private final SecureRandom random = new SecureRandom();
+
+    // 按主机记录最近一次质询，由this保护
+    private final Map<String, HostAuth> hosts = new HashMap<>();
+
+    public WebDavAuthenticator(String username, String password) {
+        this.username = username;
+        this.password = password;
+    }
+
+    @NonNull
+    @Override
+    public Response intercept(@NonNull Chain chain) throws IOException {
+        Request request = chain.request();
+        if (request.header(AUTHORIZATION) == null) {
+            String header = preemptiveHeader(request);
+            if (header != null) {
+                request = request.newBuilder().header(AUTHORIZATION, header).build();
+            }
+        }
+        return chain.proceed(request);
+    }
+
+    @Nullable
+    @Override
+    public Request authenticate(@Nullable Route route, @NonNull Response response) {
+        Request request = response.request();
+        Challenge digest = null;
+        Challenge basic = null;
+        for (Challenge challenge : response.challenges()) {
+            String scheme = challenge.scheme();
+            if ("Digest".equalsIgnoreCase(scheme) && digest == null && supportsDigest(challenge)) {
+                digest = challenge;
+            } else if ("Basic".equalsIgnoreCase(scheme) && basic == null) {
+                basic = challenge;
+            }
+        }
+
+        // 已经回应过质询仍被拒绝时说明账号或密码错误，不再重试；
+        // 预先带上的认证头被拒绝（如nonce过期）时按新的质询重试一次，Digest标明stale时也重试
+        boolean answeredChallenge = response.priorResponse() != null && request.header(AUTHORIZATION) != null;
+        boolean stale = digest != null && "true".equalsIgnoreCase(digest.authParams().get("stale"));
+        if (answeredChallenge && !(stale && responseCount(response) < 3)) {
+            return null;
+        }
+
+        HostAuth auth;
+        if (digest != null) {
+            auth = HostAuth.digest(digest);
+        } else if (basic != null) {
+            auth = HostAuth.basic(Credentials.basic(username, password, basic.charset()));
+        } else {
+            return null;
+        }
+        synchronized (this) {
+            hosts.put(request.url().host(), auth);
+        }
+        return request.newBuilder().header(AUTHORIZATION, buildHeader(auth, request)).build();
+    }
+
+    @Nullable
+    private String preemptiveHeader(Request request) {
+        HostAuth auth;
+        synchronized (this) {
+            auth = hosts.get(request.url().host());
+        }
+        return auth != null ? buildHeader(auth, request) : null;
+    }
+
+    private String buildHeader(HostAuth auth, Request request) {
+        if (auth.basicHeader != null) {
+            return auth.basicHeader;
+        }
+
+        String url = request.url().encodedPath();
+        if (request.url().encodedQuery() != null) {
+            url += "?" + request.url().encodedQuery();
+        }
+        String nc = String.format(Locale.ROOT, "%08x", auth.nextNonceCount());
+        byte[] cnonceBytes = new byte[8];
+        random.nextBytes(cnonceBytes);
+        String cnonce = ContentHash.toHex(cnonceBytes);
+
+        String ha1 = hash(auth.algorithm, username + ":" + auth.realm + ":" + password);
+        String ha2 = hash(auth.algorithm, request.method() + ":" + url);
+        String response = auth.qopAuth
+                ? hash(auth.algorithm, ha1 + ":" + auth.nonce + ":" + nc + ":" + cnonce + ":auth:" + ha2)
+                : hash(auth.algorithm, ha1 + ":" + auth.nonce + ":" + ha2);
+
+        StringBuilder header = new StringBuilder("Digest ");
+        header.append("username=\"").append(quote(username)).append("\", ");
+        header.append("realm=\"").append(quote(auth.realm)).append("\", ");
+        header.append("nonce=\"").append(quote(auth.nonce)).append("\", ");
+        header.append("uri=\"").append(quote(url)).append("\", ");
+        header.append("response=\"").append(response).append("\", ");
+        header.append("algorithm=").append(auth.algorithm);
+        if (auth.opaque != null) {
+            header.append(", opaque=\"").append(quote(auth.opaque)).append('"');
+        }
+        if (auth.qopAuth) {
+            header.append(", qop=auth, nc=").append(nc).append(", cnonce=\"").append(cnonce).append('"');
+        }
+        return header.toString();
+    }
+
+    private static boolean supportsDigest(Challenge challenge) {
+        String algorithm = challenge.authParams().get("algorithm");
+        String qop = challenge.authParams().get("qop");
+        boolean algorithmSupported = algorithm == null
+                || "MD5".equalsIgnoreCase(algorithm) || "SHA-256".equalsIgnoreCase(algorithm);
+        // 未声明qop时按RFC 2069计算；声明了qop时必须支持auth，不支持auth-int
+        boolean qopSupported = qop == null || containsToken(qop, "auth");
+        return algorithmSupported && qopSupported && challenge.authParams().get("nonce") != null;
+    }
+
+    private static boolean containsToken(String list, String token) {
+        for (String item : list.split(",")) {
+            if (item.trim().equalsIgnoreCase(token)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int responseCount(Response response) {
+        int count = 1;
+        while ((response = response.priorResponse()) != null) {
+            count++;
+        }
+        return count;
+    }
+
+    private static String hash(String algorithm, String text) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance(algorithm);
+            return ContentHash.toHex(digest.digest(text.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            // 所有Android版本都支持MD5和SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String quote(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+
+    /**
+     * 一个主机的认证方式：Basic时为固定的认证头，Digest时为质询参数和请求计数
+     */
+    private static class HostAuth {
+        String basicHeader;
+        String realm;
+        String nonce;
+        String opaque;
+        String algorithm;
+        boolean qopAuth;
+        private int nonceCount;
+
+        static HostAuth basic(String header) {
+            HostAuth auth = new HostAuth();
+            auth.basicHeader = header;
+            return auth;
+        }
+
+        static HostAuth digest(Challenge challenge) {
+            Map<String, String> params = challenge.authParams();
+            HostAuth auth = new HostAuth();
+            auth.realm = challenge.realm() != null ? challenge.realm() : "";
+            auth.nonce = params.get("nonce");
+            auth.opaque = params.get("opaque");
+            String algorithm = params.get("algorithm");
+            auth.algorithm = "SHA-256".equalsIgnoreCase(algorithm) ? "SHA-256" : "MD5";
+            auth.qopAuth = params.get("qop") != null;
+            return auth;
+        }
+
+        // 同一nonce下每个请求的计数必须递增
+        synchronized int nextNonceCount() {
+            return ++nonceCount;
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package cn.younglee.goodsticks.utils;
+
+import com.thegrizzlylabs.sardineandroid.Sardine;
+import com.thegrizzlylabs.sardineandroid.impl.OkHttpSardine;
+
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.ConnectionPool;
+import okhttp3.OkHttpClient;
+
+/**
+ * WebDAV客户端持有者
+ * 所有WebDAV请求共用一个OkHttpClient的连接池和调度器，连续的备份、列表、恢复操作可以复用已建立的
+ * TCP/TLS连接（服务器支持时通过ALPN使用HTTP/2）。按服务器地址和账号缓存Sardine客户端，
+ * 只有这些设置变化时才重新创建。
+ * 认证由WebDavAuthenticator响应服务器的质询完成，Sardine的请求和流式上传使用同一个带认证的客户端。
+ */
+public class WebDavClientHolder {
+
+    // 空闲连接保留时间，覆盖一次备份或恢复中的多次请求
+    private static final long KEEP_ALIVE_MINUTES = 5;
+    private static final int MAX_IDLE_CONNECTIONS = 5;
+
+    private static final OkHttpClient httpClient = new OkHttpClient.Builder()
+            .connectionPool(new ConnectionPool(MAX_IDLE_CONNECTIONS, KEEP_ALIVE_MINUTES, TimeUnit.MINUTES))
+            .connectTimeout(15, TimeUnit.SECONDS)
+            // 上传大文件时服务器可能较久才返回响应
+            .readTimeout(60, TimeUnit.SECONDS)
+            .writeTimeout(60, TimeUnit.SECONDS)
+            .build();
+
+    private static OkHttpClient authenticatedClient;
+    private static Sardine sardine;
+    private static String cachedKey;
+
+    /**
+     * 获取与设置对应的带认证的OkHttpClient，用于Sardine之外的请求（如流式上传）
+     */
+    public static synchronized OkHttpClient getHttpClient(String url, String username, String password) {
+        ensureClients(url, username, password);
+        return authenticatedClient;
+    }
+
+    /**
+     * 获取与设置对应的Sardine客户端，设置不变时返回同一个实例
+     */
+    public static synchronized Sardine getSardine(String url, String username, String password) {
+        ensureClients(url, username, password);
+        return sardine;
+    }
+
+    /**
+     * 创建不缓存的Sardine客户端，用于测试尚未保存的设置，仍然共用连接池
+     */
+    public static Sardine newSardine(String username, String password) {
+        return new OkHttpSardine(newAuthenticatedClient(username, password));
+    }
+
+    /**
+     * 服务器地址或账号变化时丢弃缓存的客户端
+     */
+    public static synchronized void invalidate() {
+        authenticatedClient = null;
+        sardine = null;
+        cachedKey = null;
+    }
+
+    private static void ensureClients(String url, String username, String password) {
+        String key = buildKey(url, username, password);
+        if (sardine == null || !key.equals(cachedKey)) {
+            authenticatedClient = newAuthenticatedClient(username, password);
+            sardine = new OkHttpSardine(authenticatedClient);
+            cachedKey = key;
+        }
+    }
+
+    /**
+     * 在共享客户端的基础上加入认证，newBuilder创建的客户端共用连接池和调度器
+     */
+    private static OkHttpClient newAuthenticatedClient(String username, String password) {
+        if (username == null || username.isEmpty()) {
+            return httpClient;
+        }
+        WebDavAuthenticator authenticator = new WebDavAuthenticator(username, password);
+        return httpClient.newBuilder()
+                .authenticator(authenticator)
+                .addInterceptor(authenticator)
+                .build();
+    }
+
+    private static String buildKey(String url, String username, String password) {
+        // 以换行分隔，避免不同字段拼接后相同
+        return url + '\n' + username + '\n' + password;
+    }
+}
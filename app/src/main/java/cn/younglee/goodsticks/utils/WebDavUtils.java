@@ -4,29 +4,46 @@ import android.content.Context;
 import android.content.SharedPreferences;
 import android.util.Log;
 
+import androidx.annotation.NonNull;
+import androidx.annotation.VisibleForTesting;
+
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
-import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
 import com.thegrizzlylabs.sardineandroid.DavResource;
 import com.thegrizzlylabs.sardineandroid.Sardine;
-import com.thegrizzlylabs.sardineandroid.impl.OkHttpSardine;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.nio.charset.StandardCharsets;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
-import java.util.Map;
-import java.util.concurrent.Callable;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executor;
-import java.util.concurrent.Executors;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okio.BufferedSink;
 
 import cn.younglee.goodsticks.GoodSticksApplication;
 import cn.younglee.goodsticks.data.entity.Note;
@@ -36,7 +53,8 @@ import cn.younglee.goodsticks.data.repository.UserRepository;
 
 public class WebDavUtils {
     private static final String TAG = "WebDavUtils";
-    private static final Executor executor = Executors.newSingleThreadExecutor();
+    // 备份和恢复耗时较长，在低优先级的后台线程执行
+    private static final Executor executor = AppExecutors.background();
     private static final Gson gson = new GsonBuilder().setDateFormat("yyyy-MM-dd HH:mm:ss").create();
 
     // WebDAV服务器相关配置
@@ -48,8 +66,27 @@ public class WebDavUtils {
     private static final String KEY_WEBDAV_ENABLED = "webdav_enabled";
     private static final String KEY_WEBDAV_LAST_BACKUP = "webdav_last_backup";
 
-    // 备份文件名称格式
-    private static final String BACKUP_FILE_NAME_FORMAT = "goodsticks_backup_%s.json";
+    // 备份文件名称格式，新备份使用gzip压缩，旧版未压缩的.json备份仍可恢复
+    private static final String BACKUP_FILE_NAME_FORMAT = "goodsticks_backup_%s.json.gz";
+    private static final String BACKUP_FILE_PREFIX = "goodsticks_backup_";
+    private static final String LEGACY_BACKUP_FILE_SUFFIX = ".json";
+    private static final String GZIP_BACKUP_FILE_SUFFIX = ".json.gz";
+    
+    // 增量备份文件名称格式，包含所基于的全量备份和自身的时间戳，恢复时据此找到需要重放的文件
+    private static final String DELTA_FILE_NAME_FORMAT = "goodsticks_delta_%s_to_%s.json.gz";
+    private static final Pattern DELTA_FILE_NAME_PATTERN =
+            Pattern.compile("^goodsticks_delta_(.+?)_to_(.+)\\.json\\.gz$");
+    
+    // 两次全量备份之间最多的增量备份数量，限制恢复时需要重放的文件数
+    private static final int MAX_DELTAS_PER_SNAPSHOT = 7;
+    
+    // 按用户记录的备份链状态
+    private static final String KEY_WEBDAV_CHAIN_PREFIX = "webdav_chain_";
+    
+    private static final int BUFFER_SIZE = 8192;
+    
+    // 恢复时每批写入数据库的笔记数量
+    private static final int RESTORE_BATCH_SIZE = 200;
 
     /**
      * 保存WebDAV设置
@@ -58,6 +95,24 @@ public class WebDavUtils {
                                           String password, String folder, boolean enabled) {
         SharedPreferences prefs = context.getSharedPreferences(WEBDAV_PREFS_NAME, Context.MODE_PRIVATE);
         SharedPreferences.Editor editor = prefs.edit();
+        
+        // 服务器地址或账号变化时重新创建客户端，否则继续复用已建立的连接
+        if (!url.equals(prefs.getString(KEY_WEBDAV_URL, ""))
+                || !username.equals(prefs.getString(KEY_WEBDAV_USERNAME, ""))
+                || !password.equals(prefs.getString(KEY_WEBDAV_PASSWORD, ""))) {
+            WebDavClientHolder.invalidate();
+        }
+        
+        // 服务器或目录变化后新位置没有全量备份，下次需要重新全量备份
+        if (!url.equals(prefs.getString(KEY_WEBDAV_URL, ""))
+                || !folder.equals(prefs.getString(KEY_WEBDAV_FOLDER, "/GoodSticks/"))) {
+            for (String key : prefs.getAll().keySet()) {
+                if (key.startsWith(KEY_WEBDAV_CHAIN_PREFIX)) {
+                    editor.remove(key);
+                }
+            }
+        }
+        
         editor.putString(KEY_WEBDAV_URL, url);
         editor.putString(KEY_WEBDAV_USERNAME, username);
         editor.putString(KEY_WEBDAV_PASSWORD, password);
@@ -95,8 +150,8 @@ public class WebDavUtils {
     public static CompletableFuture<Boolean> testConnection(String url, String username, String password) {
         return CompletableFuture.supplyAsync(() -> {
             try {
-                Sardine sardine = new OkHttpSardine();
-                sardine.setCredentials(username, password);
+                // 测试的设置可能尚未保存，不使用缓存的客户端，但共用连接池
+                Sardine sardine = WebDavClientHolder.newSardine(username, password);
                 
                 // 首先尝试exists方法
                 try {
@@ -130,19 +185,18 @@ public class WebDavUtils {
     }
 
     /**
-     * 获取Sardine客户端
+     * 获取Sardine客户端，由WebDavClientHolder按设置缓存
      */
     private static Sardine getSardine(Context context) {
         WebDavSettings settings = getWebDavSettings(context);
-        Sardine sardine = new OkHttpSardine();
-        sardine.setCredentials(settings.getUsername(), settings.getPassword());
         
         // 记录WebDAV连接信息（不包含密码）以便排查问题
         Log.d(TAG, "WebDAV URL: " + settings.getUrl());
         Log.d(TAG, "WebDAV Username: " + settings.getUsername());
         Log.d(TAG, "WebDAV Folder: " + settings.getFolder());
         
-        return sardine;
+        // 设置不变时复用同一个客户端及其连接
+        return WebDavClientHolder.getSardine(settings.getUrl(), settings.getUsername(), settings.getPassword());
     }
 
     /**
@@ -164,35 +218,10 @@ public class WebDavUtils {
         }
     }
 
-    /**
-     * 创建备份数据对象
-     */
-    private static BackupData createBackupData(Context context, long userId) {
-        BackupData backupData = new BackupData();
-        
-        // 获取用户信息
-        UserRepository userRepository = new UserRepository(GoodSticksApplication.getInstance());
-        User user = userRepository.getUserByIdSync(userId);
-        if (user != null) {
-            backupData.setUser(user);
-            
-            // 获取笔记信息
-            NoteRepository noteRepository = new NoteRepository(GoodSticksApplication.getInstance());
-            List<Note> notes = noteRepository.getNotesByUserIdSync(userId);
-            backupData.setNotes(notes);
-            
-            // 获取用户头像
-            SharedPreferences prefs = GoodSticksApplication.getInstance().getSecureSharedPreferences();
-            String avatarKey = "avatar_" + userId;
-            String avatarBase64 = prefs.getString(avatarKey, "");
-            backupData.setAvatarBase64(avatarBase64);
-        }
-        
-        return backupData;
-    }
-
     /**
      * 创建备份
+     * 没有全量备份或增量备份已达到MAX_DELTAS_PER_SNAPSHOT个时创建全量备份，
+     * 否则只上传上次备份之后新增、修改和删除的笔记
      */
     public static CompletableFuture<String> createBackup(Context context, long userId) {
         return CompletableFuture.supplyAsync(() -> {
@@ -202,9 +231,15 @@ public class WebDavUtils {
                     return "WebDAV设置未启用或URL为空";
                 }
                 
-                // 创建备份数据
-                BackupData backupData = createBackupData(context, userId);
-                String jsonData = gson.toJson(backupData);
+                // 获取用户信息
+                UserRepository userRepository = new UserRepository(GoodSticksApplication.getInstance());
+                User user = userRepository.getUserByIdSync(userId);
+                if (user == null) {
+                    return "备份失败: 用户不存在";
+                }
+                
+                // 获取用户头像，备份中仍以Base64保存
+                String avatarBase64 = AvatarStore.readBase64(context, userId);
                 
                 // 准备WebDAV客户端和文件名
                 Sardine sardine = getSardine(context);
@@ -232,23 +267,58 @@ public class WebDavUtils {
                     // 忽略目录错误，继续尝试上传
                 }
                 
-                // 生成备份文件名，使用时间戳
-                SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd_HH-mm-ss", Locale.getDefault());
+                // 生成备份文件名，使用时间戳；恢复时按文件名的字典序排列增量备份，数字必须是ASCII字符
+                SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd_HH-mm-ss", Locale.ROOT);
                 String timestamp = sdf.format(new Date());
-                String fileName = String.format(BACKUP_FILE_NAME_FORMAT, timestamp);
+                
+                NoteRepository noteRepository = new NoteRepository(GoodSticksApplication.getInstance());
+                SharedPreferences webDavPrefs = context.getSharedPreferences(WEBDAV_PREFS_NAME, Context.MODE_PRIVATE);
+                BackupChain chain = BackupChain.load(webDavPrefs, userId);
+                
+                // 先记录水位再读取笔记，读取期间发生的变更会在下次增量备份中再次写出
+                long watermark = noteRepository.getLatestChangeTimeSync(userId);
+                if (watermark < 0) {
+                    return "备份失败: 读取变更日志出错";
+                }
+                String avatarHash = ContentHash.sha256(avatarBase64.getBytes(StandardCharsets.UTF_8));
+                
+                // 边读取笔记边写入请求体，不在内存中构建完整的备份JSON
+                boolean incremental = chain.canAppendDelta();
+                String fileName;
+                RequestBody body;
+                if (incremental) {
+                    long since = chain.getWatermark();
+                    List<Long> deletedIds = noteRepository.getDeletedNoteIdsSinceSync(userId, since);
+                    if (deletedIds == null) {
+                        return "备份失败: 读取变更日志出错";
+                    }
+                    
+                    fileName = String.format(DELTA_FILE_NAME_FORMAT, chain.getBaseTimestamp(), timestamp);
+                    // 头像没有变化时不写出
+                    String changedAvatar = avatarHash.equals(chain.getAvatarHash()) ? null : avatarBase64;
+                    body = new BackupRequestBody(user, changedAvatar, deletedIds, (afterId, limit) ->
+                            noteRepository.getChangedNotesByUserIdAfterSync(userId, since, afterId, limit));
+                } else {
+                    fileName = String.format(BACKUP_FILE_NAME_FORMAT, timestamp);
+                    body = new BackupRequestBody(user, avatarBase64, null, (afterId, limit) ->
+                            noteRepository.getNotesByUserIdAfterSync(userId, afterId, limit));
+                }
                 String fileUrl = webDavFolderUrl + fileName;
                 
                 Log.d(TAG, "尝试上传到: " + fileUrl);
                 
                 // 使用try-catch专门处理上传操作
                 try {
-                    // 上传备份文件
-                    byte[] data = jsonData.getBytes(StandardCharsets.UTF_8);
+                    uploadStreaming(settings, fileUrl, body);
                     
-                    // 指定Content-Type为application/json
-                    String contentType = "application/json";
-                    
-                    sardine.put(fileUrl, data, contentType);
+                    // 上传成功后推进备份链，并清理已经备份的变更日志
+                    if (incremental) {
+                        chain.appendDelta(watermark, avatarHash);
+                    } else {
+                        chain = BackupChain.startNew(timestamp, watermark, avatarHash);
+                    }
+                    chain.save(webDavPrefs, userId);
+                    noteRepository.pruneChangesSync(userId, watermark);
                     
                     // 更新最后备份时间
                     updateLastBackupTime(context, timestamp);
@@ -265,6 +335,21 @@ public class WebDavUtils {
         }, executor);
     }
 
+    /**
+     * 以流的方式上传文件，请求体长度未知时使用分块传输
+     * 与Sardine使用同一个带认证的客户端，认证方式由服务器的质询决定
+     */
+    private static void uploadStreaming(WebDavSettings settings, String fileUrl, RequestBody body) throws IOException {
+        Request request = new Request.Builder().url(fileUrl).put(body).build();
+        OkHttpClient client = WebDavClientHolder.getHttpClient(
+                settings.getUrl(), settings.getUsername(), settings.getPassword());
+        try (Response response = client.newCall(request).execute()) {
+            if (!response.isSuccessful()) {
+                throw new IOException("HTTP " + response.code() + " " + response.message());
+            }
+        }
+    }
+
     /**
      * 获取可用的备份文件列表
      */
@@ -311,8 +396,7 @@ public class WebDavUtils {
                     // 获取目录中的所有文件
                     List<DavResource> resources = sardine.list(webDavFolderUrl);
                     for (DavResource resource : resources) {
-                        if (!resource.isDirectory() && resource.getName().startsWith("goodsticks_backup_") 
-                                && resource.getName().endsWith(".json")) {
+                        if (!resource.isDirectory() && isBackupFileName(resource.getName())) {
                             BackupFileInfo fileInfo = new BackupFileInfo();
                             fileInfo.setFileName(resource.getName());
                             fileInfo.setFileSize(resource.getContentLength());
@@ -334,6 +418,7 @@ public class WebDavUtils {
 
     /**
      * 从WebDAV恢复备份
+     * 选择增量备份时，先恢复其所基于的全量备份，再按时间顺序重放到所选文件为止的增量备份
      */
     public static CompletableFuture<String> restoreBackup(Context context, String fileUrl) {
         return CompletableFuture.supplyAsync(() -> {
@@ -344,59 +429,49 @@ public class WebDavUtils {
                 }
                 
                 Sardine sardine = getSardine(context);
-                
-                // 下载备份文件
-                InputStream is = sardine.get(fileUrl);
-                ByteArrayOutputStream baos = new ByteArrayOutputStream();
-                byte[] buffer = new byte[8192];
-                int bytesRead;
-                while ((bytesRead = is.read(buffer)) != -1) {
-                    baos.write(buffer, 0, bytesRead);
-                }
-                String jsonData = new String(baos.toByteArray(), StandardCharsets.UTF_8);
-                
-                // 解析备份数据
-                BackupData backupData = gson.fromJson(jsonData, BackupData.class);
-                if (backupData == null || backupData.getUser() == null) {
-                    return "备份文件数据无效";
-                }
-                
-                // 恢复用户数据
                 UserRepository userRepository = new UserRepository(GoodSticksApplication.getInstance());
-                User user = backupData.getUser();
-                long userId = userRepository.getUserIdByUsernameSync(user.getUsername());
+                NoteRepository noteRepository = new NoteRepository(GoodSticksApplication.getInstance());
                 
-                if (userId == 0) {
-                    // 如果用户不存在，则创建新用户
-                    userId = userRepository.insertUserSync(user);
+                String folderUrl = fileUrl.substring(0, fileUrl.lastIndexOf('/') + 1);
+                Matcher matcher = DELTA_FILE_NAME_PATTERN.matcher(fileUrl.substring(folderUrl.length()));
+                List<String> fileUrls = new ArrayList<>();
+                if (matcher.matches()) {
+                    String baseTimestamp = matcher.group(1);
+                    fileUrls.add(folderUrl + String.format(BACKUP_FILE_NAME_FORMAT, baseTimestamp));
+                    for (String deltaName : listDeltaFileNames(sardine, folderUrl, baseTimestamp, matcher.group(2))) {
+                        fileUrls.add(folderUrl + deltaName);
+                    }
                 } else {
-                    // 如果用户存在，则更新用户信息
-                    user.setId(userId);
-                    userRepository.updateUserSync(user);
+                    fileUrls.add(fileUrl);
                 }
                 
-                // 恢复笔记数据
-                NoteRepository noteRepository = new NoteRepository(GoodSticksApplication.getInstance());
-                List<Note> notes = backupData.getNotes();
-                if (notes != null && !notes.isEmpty()) {
-                    // 删除当前用户的所有笔记
-                    noteRepository.deleteAllNotesByUserIdSync(userId);
-                    
-                    // 插入备份中的笔记
-                    for (Note note : notes) {
-                        note.setUserId(userId);
-                        noteRepository.insertNoteSync(note);
+                // 先下载整条备份链，全部下载完成后再依次写入，下载失败时本地笔记保持不变
+                List<Long> skippedIds = new ArrayList<>();
+                List<File> files = new ArrayList<>();
+                long userId = -1;
+                try {
+                    for (String url : fileUrls) {
+                        files.add(downloadBackupFile(context, sardine, url));
+                    }
+                    for (File file : files) {
+                        userId = restoreBackupFile(file, userId, userRepository, noteRepository, skippedIds);
+                    }
+                } finally {
+                    for (File file : files) {
+                        if (!file.delete()) {
+                            Log.w(TAG, "无法删除下载的备份文件: " + file);
+                        }
                     }
                 }
                 
-                // 恢复头像
-                String avatarBase64 = backupData.getAvatarBase64();
-                if (avatarBase64 != null && !avatarBase64.isEmpty()) {
-                    SharedPreferences prefs = GoodSticksApplication.getInstance().getSecureSharedPreferences();
-                    String avatarKey = "avatar_" + userId;
-                    prefs.edit().putString(avatarKey, avatarBase64).apply();
-                }
+                // 本地笔记已被替换，下次备份重新开始全量备份
+                SharedPreferences webDavPrefs = context.getSharedPreferences(WEBDAV_PREFS_NAME, Context.MODE_PRIVATE);
+                BackupChain.clear(webDavPrefs, userId);
                 
+                if (!skippedIds.isEmpty()) {
+                    Log.w(TAG, "ID已被其他用户的笔记占用，跳过: " + skippedIds);
+                    return "恢复成功: " + userId + "，跳过" + skippedIds.size() + "条ID冲突的笔记: " + skippedIds;
+                }
                 return "恢复成功: " + userId;
             } catch (Exception e) {
                 Log.e(TAG, "恢复备份失败", e);
@@ -405,6 +480,358 @@ public class WebDavUtils {
         }, executor);
     }
 
+    /**
+     * 把备份文件原样下载到缓存目录
+     * 笔记在写入线程的事务中分批解析写入，如果直接从网络流解析，事务会在整个下载期间占用写入线程和数据库写锁，
+     * 服务器缓慢时所有笔记的保存都要等待。先下载到本地，事务中只读取本地文件
+     * @return 下载的文件
+     */
+    private static File downloadBackupFile(Context context, Sardine sardine, String fileUrl) throws IOException {
+        File file = File.createTempFile("restore_", ".tmp", context.getCacheDir());
+        try (InputStream in = sardine.get(fileUrl);
+             OutputStream out = new FileOutputStream(file)) {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+        } catch (IOException e) {
+            file.delete();
+            throw e;
+        }
+        return file;
+    }
+
+    /**
+     * 逐项解析一个已下载的备份文件，笔记按批写入数据库，不在内存中保留完整的备份
+     * @param targetUserId 增量备份所属的本地用户ID，恢复全量备份时为-1
+     * @param skippedIds 收集因ID被其他用户占用而跳过的笔记ID
+     * @return 本地用户ID
+     */
+    private static long restoreBackupFile(File file, long targetUserId,
+                                          UserRepository userRepository, NoteRepository noteRepository,
+                                          List<Long> skippedIds)
+            throws IOException {
+        boolean delta = targetUserId != -1;
+        long userId = targetUserId;
+        List<Long> deletedIds = new ArrayList<>();
+        boolean notesRestored = false;
+        String avatarBase64 = null;
+        
+        try (InputStream is = openBackupStream(new FileInputStream(file));
+             JsonReader reader = gson.newJsonReader(new InputStreamReader(is, StandardCharsets.UTF_8))) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                if ("user".equals(name) && reader.peek() != JsonToken.NULL) {
+                    // 恢复用户数据，增量备份中的用户信息更新到全量备份恢复出的用户上
+                    User user = gson.fromJson(reader, User.class);
+                    if (delta) {
+                        user.setId(userId);
+                        userRepository.updateUserSync(user);
+                    } else {
+                        userId = restoreUser(userRepository, user);
+                    }
+                } else if ("deletedNoteIds".equals(name) && reader.peek() != JsonToken.NULL) {
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        deletedIds.add(reader.nextLong());
+                    }
+                    reader.endArray();
+                } else if ("notes".equals(name) && reader.peek() != JsonToken.NULL) {
+                    // 备份按user、deletedNoteIds、notes的顺序写出，恢复笔记前必须已知用户
+                    if (userId == -1) {
+                        throw new IOException("备份文件数据无效");
+                    }
+                    
+                    // 恢复笔记数据
+                    long restoreUserId = userId;
+                    reader.beginArray();
+                    List<Long> skipped = delta
+                            ? noteRepository.applyNoteChangesSync(restoreUserId, deletedIds, () -> readNoteBatch(reader))
+                            : noteRepository.replaceAllNotesByUserIdSync(restoreUserId, () -> readNoteBatch(reader));
+                    if (skipped == null) {
+                        throw new IOException("写入笔记出错");
+                    }
+                    skippedIds.addAll(skipped);
+                    reader.endArray();
+                    notesRestored = true;
+                } else if ("avatarBase64".equals(name) && reader.peek() != JsonToken.NULL) {
+                    avatarBase64 = reader.nextString();
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+        }
+        
+        if (userId == -1) {
+            throw new IOException("备份文件数据无效");
+        }
+        
+        // 增量备份中没有新增或修改的笔记时，只需要应用删除
+        if (delta && !notesRestored && !deletedIds.isEmpty()
+                && noteRepository.applyNoteChangesSync(userId, deletedIds, Collections::emptyList) == null) {
+            throw new IOException("写入笔记出错");
+        }
+        
+        // 恢复头像，失败时不影响已恢复的笔记
+        if (avatarBase64 != null && !avatarBase64.isEmpty()) {
+            try {
+                AvatarStore.writeBase64(GoodSticksApplication.getInstance(), userId, avatarBase64);
+            } catch (IOException e) {
+                Log.w(TAG, "恢复头像失败", e);
+            }
+        }
+        
+        return userId;
+    }
+
+    /**
+     * 列出基于同一个全量备份、时间不晚于untilTimestamp的增量备份文件，按时间先后排序
+     */
+    private static List<String> listDeltaFileNames(Sardine sardine, String folderUrl,
+                                                   String baseTimestamp, String untilTimestamp) throws IOException {
+        List<String> names = new ArrayList<>();
+        for (DavResource resource : sardine.list(folderUrl)) {
+            Matcher matcher = DELTA_FILE_NAME_PATTERN.matcher(resource.getName());
+            if (!resource.isDirectory() && matcher.matches()
+                    && matcher.group(1).equals(baseTimestamp)
+                    && matcher.group(2).compareTo(untilTimestamp) <= 0) {
+                names.add(resource.getName());
+            }
+        }
+        // 时间戳格式的字典序即时间顺序
+        Collections.sort(names);
+        return names;
+    }
+
+    /**
+     * 是否为备份文件，包括压缩备份、增量备份和旧版未压缩的备份
+     */
+    private static boolean isBackupFileName(String name) {
+        if (DELTA_FILE_NAME_PATTERN.matcher(name).matches()) {
+            return true;
+        }
+        return name.startsWith(BACKUP_FILE_PREFIX)
+                && (name.endsWith(GZIP_BACKUP_FILE_SUFFIX) || name.endsWith(LEGACY_BACKUP_FILE_SUFFIX));
+    }
+
+    /**
+     * 打开备份文件的读取流，根据gzip魔数判断是否需要解压，兼容旧版未压缩的备份
+     */
+    private static InputStream openBackupStream(InputStream raw) throws IOException {
+        BufferedInputStream in = new BufferedInputStream(raw, BUFFER_SIZE);
+        in.mark(2);
+        int first = in.read();
+        int second = in.read();
+        in.reset();
+        
+        if (first == (GZIPInputStream.GZIP_MAGIC & 0xff) && second == (GZIPInputStream.GZIP_MAGIC >> 8)) {
+            return new GZIPInputStream(in, BUFFER_SIZE);
+        }
+        return in;
+    }
+
+    /**
+     * 恢复备份中的用户，用户名已存在时更新该用户，否则创建新用户
+     * @return 本地用户ID
+     */
+    private static long restoreUser(UserRepository userRepository, User user) {
+        long userId = userRepository.getUserIdByUsernameSync(user.getUsername());
+        
+        if (userId == 0) {
+            // 如果用户不存在，则创建新用户
+            userId = userRepository.insertUserSync(user);
+        } else {
+            // 如果用户存在，则更新用户信息
+            user.setId(userId);
+            userRepository.updateUserSync(user);
+        }
+        return userId;
+    }
+
+    /**
+     * 从备份的notes数组中读取下一批笔记
+     * @return 笔记列表，数组读完时返回空列表
+     */
+    private static List<Note> readNoteBatch(JsonReader reader) throws IOException {
+        List<Note> batch = new ArrayList<>(RESTORE_BATCH_SIZE);
+        while (batch.size() < RESTORE_BATCH_SIZE && reader.hasNext()) {
+            Note note = gson.fromJson(reader, Note.class);
+            if (note != null) {
+                batch.add(note);
+            }
+        }
+        return batch;
+    }
+
+    /**
+     * 按ID分批读取需要备份的笔记
+     */
+    @VisibleForTesting
+    interface NoteBatchLoader {
+        /**
+         * @return ID大于afterId的最多limit条笔记，出错时返回null
+         */
+        List<Note> load(long afterId, int limit);
+    }
+
+    /**
+     * 流式备份请求体，按BackupData的JSON结构依次写出用户、笔记和头像，增量备份额外写出删除的笔记ID
+     * 笔记按ID分批从数据库读取后立即写出并以gzip压缩，内存占用与笔记数量无关
+     */
+    @VisibleForTesting
+    static class BackupRequestBody extends RequestBody {
+        private static final int BATCH_SIZE = 100;
+        
+        private final User user;
+        private final String avatarBase64;
+        private final List<Long> deletedNoteIds;
+        private final NoteBatchLoader loader;
+
+        /**
+         * @param avatarBase64 头像，为null时不写出
+         * @param deletedNoteIds 删除的笔记ID，全量备份为null
+         */
+        BackupRequestBody(User user, String avatarBase64, List<Long> deletedNoteIds, NoteBatchLoader loader) {
+            this.user = user;
+            this.avatarBase64 = avatarBase64;
+            this.deletedNoteIds = deletedNoteIds;
+            this.loader = loader;
+        }
+
+        @Override
+        public MediaType contentType() {
+            return MediaType.parse("application/gzip");
+        }
+
+        @Override
+        public long contentLength() {
+            return -1;
+        }
+
+        @Override
+        public void writeTo(@NonNull BufferedSink sink) throws IOException {
+            // 请求可能被重试，每次写出都重新从数据库读取
+            GZIPOutputStream gzip = new GZIPOutputStream(sink.outputStream(), BUFFER_SIZE);
+            JsonWriter writer = gson.newJsonWriter(new OutputStreamWriter(gzip, StandardCharsets.UTF_8));
+            writer.beginObject();
+            
+            writer.name("user");
+            gson.toJson(user, User.class, writer);
+            
+            // 删除的ID写在笔记之前，恢复时可以和笔记在同一个事务中应用
+            if (deletedNoteIds != null) {
+                writer.name("deletedNoteIds");
+                writer.beginArray();
+                for (long id : deletedNoteIds) {
+                    writer.value(id);
+                }
+                writer.endArray();
+            }
+            
+            writer.name("notes");
+            writer.beginArray();
+            long afterId = Long.MIN_VALUE;
+            List<Note> batch;
+            do {
+                batch = loader.load(afterId, BATCH_SIZE);
+                if (batch == null) {
+                    throw new IOException("读取笔记失败");
+                }
+                for (Note note : batch) {
+                    gson.toJson(note, Note.class, writer);
+                    afterId = note.getId();
+                }
+            } while (batch.size() == BATCH_SIZE);
+            writer.endArray();
+            
+            if (avatarBase64 != null) {
+                writer.name("avatarBase64").value(avatarBase64);
+            }
+            writer.endObject();
+            writer.flush();
+            // 只结束压缩流，不关闭OkHttp的sink
+            gzip.finish();
+        }
+    }
+
+    /**
+     * 备份链状态：当前全量备份的时间戳、之后的增量备份数量、已备份到的变更水位和头像摘要
+     * 保存在webdav_prefs中，按用户区分
+     */
+    private static class BackupChain {
+        private static final String KEY_BASE = KEY_WEBDAV_CHAIN_PREFIX + "base_";
+        private static final String KEY_DELTAS = KEY_WEBDAV_CHAIN_PREFIX + "deltas_";
+        private static final String KEY_WATERMARK = KEY_WEBDAV_CHAIN_PREFIX + "watermark_";
+        private static final String KEY_AVATAR = KEY_WEBDAV_CHAIN_PREFIX + "avatar_";
+        
+        private final String baseTimestamp;
+        private int deltaCount;
+        private long watermark;
+        private String avatarHash;
+
+        private BackupChain(String baseTimestamp, int deltaCount, long watermark, String avatarHash) {
+            this.baseTimestamp = baseTimestamp;
+            this.deltaCount = deltaCount;
+            this.watermark = watermark;
+            this.avatarHash = avatarHash;
+        }
+
+        static BackupChain startNew(String baseTimestamp, long watermark, String avatarHash) {
+            return new BackupChain(baseTimestamp, 0, watermark, avatarHash);
+        }
+
+        static BackupChain load(SharedPreferences prefs, long userId) {
+            return new BackupChain(
+                    prefs.getString(KEY_BASE + userId, null),
+                    prefs.getInt(KEY_DELTAS + userId, 0),
+                    prefs.getLong(KEY_WATERMARK + userId, 0),
+                    prefs.getString(KEY_AVATAR + userId, null));
+        }
+
+        static void clear(SharedPreferences prefs, long userId) {
+            prefs.edit()
+                    .remove(KEY_BASE + userId)
+                    .remove(KEY_DELTAS + userId)
+                    .remove(KEY_WATERMARK + userId)
+                    .remove(KEY_AVATAR + userId)
+                    .apply();
+        }
+
+        void save(SharedPreferences prefs, long userId) {
+            prefs.edit()
+                    .putString(KEY_BASE + userId, baseTimestamp)
+                    .putInt(KEY_DELTAS + userId, deltaCount)
+                    .putLong(KEY_WATERMARK + userId, watermark)
+                    .putString(KEY_AVATAR + userId, avatarHash)
+                    .apply();
+        }
+
+        boolean canAppendDelta() {
+            return baseTimestamp != null && deltaCount < MAX_DELTAS_PER_SNAPSHOT;
+        }
+
+        void appendDelta(long watermark, String avatarHash) {
+            this.deltaCount++;
+            this.watermark = watermark;
+            this.avatarHash = avatarHash;
+        }
+
+        String getBaseTimestamp() {
+            return baseTimestamp;
+        }
+
+        long getWatermark() {
+            return watermark;
+        }
+
+        String getAvatarHash() {
+            return avatarHash;
+        }
+    }
+
     /**
      * WebDAV设置数据类
      */
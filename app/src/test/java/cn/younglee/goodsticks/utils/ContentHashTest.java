@@ -0,0 +1,43 @@
+package cn.younglee.goodsticks.utils;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+/**
+ * 笔记内容指纹
+ */
+public class ContentHashTest {
+
+    @Test
+    public void hashIsStable() {
+        // 指纹保存在content_hash列中，算法改变会使已有笔记全部被当作已修改
+        assertEquals(0xcecf6e38cc2f7e7cL, ContentHash.of("标题", "内容", "/images/a.jpg"));
+        assertEquals(0xf998341be47bae14L, ContentHash.of(null, null, null));
+        assertEquals(ContentHash.of("a", "b", "c"), ContentHash.of("a", "b", "c"));
+    }
+
+    @Test
+    public void hashSeparatesFields() {
+        assertNotEquals(ContentHash.of("ab", "c", null), ContentHash.of("a", "bc", null));
+        assertNotEquals(ContentHash.of("", "a", null), ContentHash.of("a", "", null));
+        // null与空字符串不同
+        assertNotEquals(ContentHash.of(null, "", ""), ContentHash.of("", "", ""));
+    }
+
+    @Test
+    public void hashChangesWithEachField() {
+        long base = ContentHash.of("标题", "内容", "/images/a.jpg");
+        assertNotEquals(base, ContentHash.of("标题!", "内容", "/images/a.jpg"));
+        assertNotEquals(base, ContentHash.of("标题", "内容。", "/images/a.jpg"));
+        assertNotEquals(base, ContentHash.of("标题", "内容", "/images/b.jpg"));
+        assertNotEquals(base, ContentHash.of("标题", "内容", null));
+    }
+
+    @Test
+    public void hashCoversBothBytesOfEachChar() {
+        // 低字节相同、高字节不同的字符
+        assertNotEquals(ContentHash.of("A", null, null), ContentHash.of("Ł", null, null));
+    }
+}
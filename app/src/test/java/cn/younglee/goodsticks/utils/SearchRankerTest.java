@@ -0,0 +1,139 @@
+package cn.younglee.goodsticks.utils;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 搜索结果相关度：BM25分数、容错搜索的相似度和高亮区间查找
+ */
+public class SearchRankerTest {
+
+    @Test
+    public void bm25MatchesFormulaForSingleHit() {
+        // 10行中只有1行命中一次，长度等于平均长度时词频部分为1，分数等于idf
+        byte[] matchInfo = matchInfo(1, 1, 10, new int[]{10}, new int[]{10}, new int[]{1, 1, 1});
+        assertEquals(Math.log(9.5 / 1.5 + 1), SearchRanker.bm25(matchInfo), 1e-9);
+    }
+
+    @Test
+    public void bm25RanksMoreHitsHigher() {
+        double three = SearchRanker.bm25(matchInfo(1, 1, 10, new int[]{10}, new int[]{10}, new int[]{3, 4, 2}));
+        double one = SearchRanker.bm25(matchInfo(1, 1, 10, new int[]{10}, new int[]{10}, new int[]{1, 4, 2}));
+        assertTrue(three > one);
+    }
+
+    @Test
+    public void bm25RanksShorterRowsHigher() {
+        double shorter = SearchRanker.bm25(matchInfo(1, 1, 10, new int[]{20}, new int[]{5}, new int[]{1, 2, 2}));
+        double longer = SearchRanker.bm25(matchInfo(1, 1, 10, new int[]{20}, new int[]{80}, new int[]{1, 2, 2}));
+        assertTrue(shorter > longer);
+    }
+
+    @Test
+    public void bm25RanksRarerTermsHigher() {
+        double rare = SearchRanker.bm25(matchInfo(1, 1, 100, new int[]{10}, new int[]{10}, new int[]{1, 1, 1}));
+        double common = SearchRanker.bm25(matchInfo(1, 1, 100, new int[]{10}, new int[]{10}, new int[]{1, 60, 50}));
+        assertTrue(rare > common);
+    }
+
+    @Test
+    public void bm25SumsPhrasesAndColumns() {
+        // 两个短语、两列，第二个短语只在第二列命中
+        byte[] both = matchInfo(2, 2, 10, new int[]{5, 20}, new int[]{5, 20},
+                new int[]{1, 1, 1, 0, 0, 0, 0, 0, 0, 1, 1, 1});
+        byte[] first = matchInfo(1, 2, 10, new int[]{5, 20}, new int[]{5, 20},
+                new int[]{1, 1, 1, 0, 0, 0});
+        assertEquals(2 * SearchRanker.bm25(first), SearchRanker.bm25(both), 1e-9);
+    }
+
+    @Test
+    public void bm25IsZeroForMissingOrTruncatedInput() {
+        assertEquals(0, SearchRanker.bm25(null), 0);
+        assertEquals(0, SearchRanker.bm25(new byte[8]), 0);
+        byte[] complete = matchInfo(1, 1, 10, new int[]{10}, new int[]{10}, new int[]{1, 1, 1});
+        assertEquals(0, SearchRanker.bm25(Arrays.copyOf(complete, complete.length - 4)), 0);
+    }
+
+    @Test
+    public void similarityFindsBestMatchingSubstring() {
+        assertEquals(1, SearchRanker.similarity("abc", "xxabcxx"), 1e-9);
+        // 少一个字符
+        assertEquals(1 - 1.0 / 7, SearchRanker.similarity("shoping", "shopping list"), 1e-9);
+        assertEquals(1 - 1.0 / 3, SearchRanker.similarity("abc", "xxabxx"), 1e-9);
+        assertEquals(1 - 1.0 / 3, SearchRanker.similarity("备忘录", "备望录"), 1e-9);
+    }
+
+    @Test
+    public void similarityBoundaries() {
+        assertEquals(0, SearchRanker.similarity("", "abc"), 0);
+        assertEquals(0, SearchRanker.similarity(null, "abc"), 0);
+        assertEquals(0, SearchRanker.similarity("abc", ""), 0);
+        // 搜索词比文本长时缺少的字符计为编辑
+        assertEquals(0.5, SearchRanker.similarity("abcdef", "abc"), 1e-9);
+        assertEquals(0, SearchRanker.similarity("abc", "xyz"), 1e-9);
+    }
+
+    @Test
+    public void indexOfIgnoreCaseKeepsOriginalOffsets() {
+        assertEquals(6, SearchRanker.indexOfIgnoreCase("Hello World", "WORLD"));
+        assertEquals(3, SearchRanker.indexOfIgnoreCase("会议：备忘录", "备忘"));
+        assertEquals(0, SearchRanker.indexOfIgnoreCase("abc", ""));
+        assertEquals(-1, SearchRanker.indexOfIgnoreCase("abc", "abd"));
+        // 搜索词比文本长
+        assertEquals(-1, SearchRanker.indexOfIgnoreCase("ab", "abc"));
+    }
+
+    @Test
+    public void findHighlightsReturnsOrderedRanges() {
+        List<int[]> ranges = SearchRanker.findHighlights("Android 开发 android", Arrays.asList("android", "开发"));
+        assertEquals(3, ranges.size());
+        assertArrayEquals(new int[]{0, 7}, ranges.get(0));
+        assertArrayEquals(new int[]{8, 10}, ranges.get(1));
+        assertArrayEquals(new int[]{11, 18}, ranges.get(2));
+    }
+
+    @Test
+    public void findHighlightsPrefersLongestTermWithoutOverlap() {
+        List<int[]> ranges = SearchRanker.findHighlights("xabcx", Arrays.asList("ab", "abc", "bc"));
+        assertEquals(1, ranges.size());
+        assertArrayEquals(new int[]{1, 4}, ranges.get(0));
+    }
+
+    @Test
+    public void findHighlightsHandlesEmptyInput() {
+        assertTrue(SearchRanker.findHighlights("", Collections.singletonList("a")).isEmpty());
+        assertTrue(SearchRanker.findHighlights(null, Collections.singletonList("a")).isEmpty());
+        assertTrue(SearchRanker.findHighlights("abc", Collections.emptyList()).isEmpty());
+        // 搜索词比文本长
+        assertTrue(SearchRanker.findHighlights("ab", Collections.singletonList("abc")).isEmpty());
+    }
+
+    /**
+     * 按matchinfo(notes_fts, 'pcnalx')的布局构造本机字节序的数据
+     * @param hits 每个短语在每列的{当前行命中次数, 所有行命中次数, 命中的行数}
+     */
+    private static byte[] matchInfo(int phrases, int columns, int rows, int[] averages, int[] lengths, int[] hits) {
+        ByteBuffer buffer = ByteBuffer.allocate(4 * (3 + averages.length + lengths.length + hits.length))
+                .order(ByteOrder.nativeOrder());
+        buffer.putInt(phrases).putInt(columns).putInt(rows);
+        for (int value : averages) {
+            buffer.putInt(value);
+        }
+        for (int value : lengths) {
+            buffer.putInt(value);
+        }
+        for (int value : hits) {
+            buffer.putInt(value);
+        }
+        return buffer.array();
+    }
+}
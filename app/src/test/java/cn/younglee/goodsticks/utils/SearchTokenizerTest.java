@@ -0,0 +1,131 @@
+package cn.younglee.goodsticks.utils;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 搜索分词：索引文本的二元组切分、标题的拼音后缀、MATCH表达式和容错搜索的三字符片段
+ */
+public class SearchTokenizerTest {
+
+    @Test
+    public void indexTextSplitsChineseIntoBigrams() {
+        assertEquals("备忘 忘录 录", SearchTokenizer.buildIndexText("备忘录", null));
+        // 单个汉字原样输出
+        assertEquals("好", SearchTokenizer.buildIndexText("好", ""));
+        assertEquals("ひら らが がな な", SearchTokenizer.buildIndexText(null, "ひらがな"));
+    }
+
+    @Test
+    public void indexTextSplitsMixedScripts() {
+        assertEquals("android 开发 发笔 笔记 记 v2",
+                SearchTokenizer.buildIndexText("Android开发笔记v2", null));
+        // 标点和空白作为分隔符丢弃，标题和正文依次输出
+        assertEquals("会议 议 hello 世界 界",
+                SearchTokenizer.buildIndexText("会议：", "Hello, 世界！"));
+        assertEquals("", SearchTokenizer.buildIndexText(null, null));
+    }
+
+    @Test
+    public void matchQueryUsesPhraseForChineseAndPrefixForOthers() {
+        assertEquals("\"备忘 忘录\"", SearchTokenizer.buildMatchQuery("备忘录"));
+        assertEquals("笔* android*", SearchTokenizer.buildMatchQuery("笔 Android"));
+        assertEquals("android* \"开发 发笔 笔记\" v2*", SearchTokenizer.buildMatchQuery("Android开发笔记v2"));
+    }
+
+    @Test
+    public void matchQueryDropsFtsSyntax() {
+        String query = SearchTokenizer.buildMatchQuery("a\"b OR c* -d NEAR(e) AND f:g ^h NOT");
+        assertEquals("a* b* or* c* d* near* e* and* f* g* h* not*", query);
+        // 引号、括号、列过滤和减号不会进入表达式，运算符转为小写后按普通词匹配
+        for (String operator : new String[]{"\"", "(", ")", ":", "-", "^", "OR", "AND", "NOT", "NEAR"}) {
+            assertFalse(operator, query.contains(operator));
+        }
+    }
+
+    @Test
+    public void matchQueryIsEmptyWithoutTerms() {
+        assertEquals("", SearchTokenizer.buildMatchQuery(null));
+        assertEquals("", SearchTokenizer.buildMatchQuery(""));
+        assertEquals("", SearchTokenizer.buildMatchQuery("  \"*\" -，。 "));
+    }
+
+    @Test
+    public void extractTermsMatchesQuerySegments() {
+        assertEquals(Arrays.asList("android", "开发", "v2"), SearchTokenizer.extractTerms("Android开发 V2"));
+        assertTrue(SearchTokenizer.extractTerms(null).isEmpty());
+    }
+
+    @Test
+    public void pinyinTextListsSuffixesOfEachRun() {
+        assertEquals("beiwanglu wanglu lu", SearchTokenizer.buildPinyinText("备忘录"));
+        assertEquals("bwl wl l", SearchTokenizer.buildInitialsText("备忘录"));
+        // 非汉字字符结束一段，每段分别输出后缀
+        assertEquals("zhoumo mo jihua hua", SearchTokenizer.buildPinyinText("周末Plan计划"));
+        assertEquals("zm m jh h", SearchTokenizer.buildInitialsText("周末 plan 计划"));
+    }
+
+    @Test
+    public void pinyinTextSplitsLongRuns() {
+        // 17个字分为16个字和1个字两段，后缀数为16 + 1
+        String title = "一二三四五六七八九十一二三四五六七";
+        String[] suffixes = SearchTokenizer.buildInitialsText(title).split(" ");
+        assertEquals(17, suffixes.length);
+        assertEquals("yesswlqbjsyesswl", suffixes[0]);
+        assertEquals("q", suffixes[16]);
+    }
+
+    @Test
+    public void pinyinTextIsEmptyWithoutHanzi() {
+        assertEquals("", SearchTokenizer.buildPinyinText(null));
+        assertEquals("", SearchTokenizer.buildPinyinText(""));
+        assertEquals("", SearchTokenizer.buildInitialsText("Plan B"));
+    }
+
+    @Test
+    public void trigramsAreLowercaseAndDeduplicated() {
+        assertEquals(set("hel", "ell", "llo"), SearchTokenizer.buildTrigrams("Hello", null));
+        assertEquals(set("aaa"), SearchTokenizer.buildTrigrams("aaaaa", ""));
+        assertEquals(set("备忘录", "忘录本"), SearchTokenizer.buildTrigrams(null, "备忘录本"));
+    }
+
+    @Test
+    public void trigramsSpanFieldsAndWordBoundaries() {
+        // 标点和字段之间规范化为一个空格，片段可以跨越单词
+        assertEquals(set("ab ", "b c", " cd"), SearchTokenizer.buildTrigrams("ab", "cd"));
+        assertEquals(set("ab ", "b c", " cd"), SearchTokenizer.buildTrigrams("AB!!", "  cd"));
+    }
+
+    @Test
+    public void trigramsOnlyIndexTextPrefix() {
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            content.append('a');
+        }
+        content.append("xyz");
+        assertEquals(set("aaa"), SearchTokenizer.buildTrigrams(null, content.toString()));
+    }
+
+    @Test
+    public void queryTrigramsUseNormalizedQuery() {
+        assertEquals("hello world", SearchTokenizer.normalizeForFuzzy("  Hello,  World!! "));
+        assertEquals(set("sho", "hop", "op ", "p p", " pi", "pin", "ing"),
+                SearchTokenizer.buildQueryTrigrams("Shop-ping!"));
+        assertEquals(SearchTokenizer.buildTrigrams("Shop ping", null), SearchTokenizer.buildQueryTrigrams("shop ping"));
+        // 不足三个字符时没有片段
+        assertEquals(Collections.emptySet(), SearchTokenizer.buildQueryTrigrams("ab"));
+        assertEquals(Collections.emptySet(), SearchTokenizer.buildQueryTrigrams(null));
+    }
+
+    private static Set<String> set(String... grams) {
+        return new HashSet<>(Arrays.asList(grams));
+    }
+}